@@ -0,0 +1,48 @@
+package com.liuyansh.benchmarks;
+import com.liuyansh.dto.AuthPrincipal;
+import com.liuyansh.entity.AuthUser;
+import com.liuyansh.service.AuthService;
+import com.liuyansh.service.InMemoryOtpStore;
+import com.liuyansh.service.InMemoryRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AuthBenchmark {
+    static final String SECRET = "a-very-long-and-secure-secret-key-for-hs256-algorithm";
+    // Per-request authentication cost with and without the verified-token cache.
+    @Param({"true", "false"})
+    public boolean tokenCache;
+    private AuthService authService;
+    private AuthUser user;
+    private String token;
+    @Setup(Level.Trial)
+    public void setup() {
+        authService = newAuthService(tokenCache);
+        user = new AuthUser(new UUID(42, 42), "13800138000");
+        token = authService.generateToken(user);
+    }
+    @Benchmark
+    public String generateToken() {
+        return authService.generateToken(user);
+    }
+    @Benchmark
+    public Optional<AuthPrincipal> authenticate() {
+        return authService.authenticate(token);
+    }
+    static AuthService newAuthService(boolean tokenCache) {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        return new AuthService(null, SECRET, new InMemoryOtpStore(100_000, 5, registry), new InMemoryRateLimiter(200_000, registry),
+                Duration.ofMinutes(5), 1, Duration.ofSeconds(60), 20, Duration.ofMinutes(10),
+                tokenCache, 10_000, Duration.ofMinutes(5), registry);
+    }
+}
@@ -0,0 +1,65 @@
+package com.liuyansh.benchmarks;
+import com.liuyansh.LiuyanApplication;
+import com.liuyansh.entity.Reply;
+import com.liuyansh.service.MessageService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+final class BenchmarkContext {
+    private static final String CJK = "留言板今天天气很好我们一起去公园散步吧谢谢你的回复真的很有意思这个问题值得讨论周末愉快";
+    private BenchmarkContext() {
+    }
+    // Boots the real application on a private in-memory H2 database with logging and scheduling quietened. Quartz keeps
+    // the clustered JDBC store the application is configured for; Flyway creates its tables and the scheduler never starts.
+    static ConfigurableApplicationContext start(String name, String... overrides) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + name + ";DB_CLOSE_DELAY=-1",
+                "--spring.quartz.auto-startup=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.liuyansh=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"));
+        args.addAll(Arrays.asList(overrides));
+        return new SpringApplicationBuilder(LiuyanApplication.class).run(args.toArray(String[]::new));
+    }
+    // Same seed, same board: message count, reply fan-out, thread shapes and texts are all derived from it.
+    static List<UUID> seedBoard(MessageService messageService, long seed, int messages, int maxRepliesPerMessage, int maxDepth) {
+        Random random = new Random(seed);
+        List<UUID> messageIds = new ArrayList<>(messages);
+        for (int m = 0; m < messages; m++) {
+            UUID messageId = messageService.createMessage(text(random, 20 + random.nextInt(200)), "user-" + random.nextInt(500), phone(random)).getId();
+            messageIds.add(messageId);
+            List<UUID> replyIds = new ArrayList<>();
+            List<Integer> depths = new ArrayList<>();
+            int replies = random.nextInt(maxRepliesPerMessage + 1);
+            for (int r = 0; r < replies; r++) {
+                int parent = replyIds.isEmpty() || random.nextInt(3) == 0 ? -1 : random.nextInt(replyIds.size());
+                if (parent >= 0 && depths.get(parent) >= maxDepth) parent = -1;
+                Reply reply = messageService.createReply(messageId, parent < 0 ? null : replyIds.get(parent),
+                        text(random, 10 + random.nextInt(120)), "user-" + random.nextInt(500), phone(random)).orElseThrow();
+                replyIds.add(reply.getId());
+                depths.add(parent < 0 ? 1 : depths.get(parent) + 1);
+            }
+        }
+        return messageIds;
+    }
+    static String text(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            // Mostly Chinese with some ASCII words and punctuation, like the real board.
+            int pick = random.nextInt(10);
+            if (pick < 7) sb.append(CJK.charAt(random.nextInt(CJK.length())));
+            else if (pick < 9) sb.append((char) ('a' + random.nextInt(26)));
+            else sb.append(' ');
+        }
+        return sb.toString();
+    }
+    static String phone(Random random) {
+        return "1" + (30 + random.nextInt(60)) + "****" + String.format("%04d", random.nextInt(10000));
+    }
+}
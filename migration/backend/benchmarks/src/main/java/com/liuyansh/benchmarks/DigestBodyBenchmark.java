@@ -0,0 +1,30 @@
+package com.liuyansh.benchmarks;
+import com.liuyansh.service.EmailService;
+import org.openjdk.jmh.annotations.*;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DigestBodyBenchmark {
+    @Param({"1000", "100000"})
+    public int messages;
+    private String[] texts;
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        texts = new String[messages];
+        for (int i = 0; i < messages; i++) texts[i] = BenchmarkContext.text(random, 20 + random.nextInt(200));
+    }
+    // A small fixed heap makes any regression back to whole-body buffering show up as GC time or an OOM.
+    @Benchmark
+    public void writeEmailBody() throws IOException {
+        EmailService.writeEmailBody(Writer.nullWriter(), messages, messages / 2L, messages * 3L, Arrays.stream(texts));
+    }
+}
@@ -0,0 +1,46 @@
+package com.liuyansh.benchmarks;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.liuyansh.dto.FeedPage;
+import com.liuyansh.service.MessageService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.util.concurrent.TimeUnit;
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FeedBenchmark {
+    private ConfigurableApplicationContext context;
+    private MessageService messageService;
+    private ObjectMapper objectMapper;
+    private FeedPage page;
+    private String secondPageCursor;
+    @Setup(Level.Trial)
+    public void setup() {
+        // The feed cache is disabled so every call measures the database path.
+        context = BenchmarkContext.start("feed", "--liuyan.feed.cache.max-weight-bytes=0");
+        messageService = context.getBean(MessageService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        BenchmarkContext.seedBoard(messageService, 42, 2000, 12, 3);
+        page = messageService.getFeed(null, 20);
+        secondPageCursor = page.nextCursor();
+    }
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+    @Benchmark
+    public FeedPage loadFirstPage() {
+        return messageService.getFeed(null, 20);
+    }
+    @Benchmark
+    public FeedPage loadSecondPage() {
+        return messageService.getFeed(secondPageCursor, 20);
+    }
+    @Benchmark
+    public byte[] serializePage() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,43 @@
+package com.liuyansh.benchmarks;
+import com.liuyansh.service.MessageService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LikeToggleBenchmark {
+    private static final AtomicInteger callers = new AtomicInteger();
+    private ConfigurableApplicationContext context;
+    private MessageService messageService;
+    private UUID hotMessageId;
+    @State(Scope.Thread)
+    public static class Caller {
+        String userId;
+        @Setup(Level.Trial)
+        public void setup() {
+            userId = "bench-user-" + callers.incrementAndGet();
+        }
+    }
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start("likes");
+        messageService = context.getBean(MessageService.class);
+        hotMessageId = messageService.createMessage("hot message", "seed-user", "138****0000").getId();
+    }
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+    // Every thread hammers the same message, which is the contention pattern of a viral post.
+    @Benchmark
+    public boolean toggleHotMessage(Caller caller) {
+        return messageService.toggleLike(caller.userId, hotMessageId, "message");
+    }
+}
@@ -0,0 +1,37 @@
+package com.liuyansh.benchmarks;
+import com.liuyansh.dto.OtpRequest;
+import com.liuyansh.service.AuthService;
+import org.openjdk.jmh.annotations.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OtpRateLimitBenchmark {
+    private AuthService authService;
+    private String[] phones;
+    private String[] ips;
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+    @Setup(Level.Trial)
+    public void setup() {
+        authService = AuthBenchmark.newAuthService(true);
+        Random random = new Random(42);
+        // A wide phone range from a narrow IP range: the enumeration pattern the limiter has to absorb.
+        phones = new String[50_000];
+        for (int i = 0; i < phones.length; i++) phones[i] = String.format("1%010d", random.nextInt(1_000_000_000));
+        ips = new String[256];
+        for (int i = 0; i < ips.length; i++) ips[i] = "10.0." + (i / 64) + "." + random.nextInt(256);
+    }
+    @Benchmark
+    public OtpRequest requestOtp(Cursor cursor) {
+        int i = cursor.next++;
+        return authService.requestOtp(phones[Math.floorMod(i, phones.length)], ips[Math.floorMod(i, ips.length)]);
+    }
+}
@@ -0,0 +1,31 @@
+#!/usr/bin/env bash
+# Compares throughput and tail latency of GET /api/messages on platform threads vs virtual threads.
+# Requires: Java 21, wrk (https://github.com/wg/wrk), curl. Usage: loadtest/compare-threading.sh [connections] [duration]
+set -euo pipefail
+cd "$(dirname "$0")/.."
+CONNECTIONS="${1:-2000}"
+DURATION="${2:-60s}"
+PORT=18080
+OUT="target/loadtest"
+mkdir -p "$OUT"
+mvn -B -q -Pjava21 -DskipTests package
+JAR="target/liuyan-backend-1.0.0-exec.jar" # the repackaged, runnable jar; the plain one has no launcher
+run() {
+  local name="$1"; shift
+  # The feed cache is disabled so every request exercises the blocking JPA path.
+  java -jar "$JAR" --server.port="$PORT" --liuyan.feed.cache.max-weight-bytes=0 \
+       --logging.level.org.hibernate.SQL=WARN --logging.level.com.liuyansh=INFO "$@" > "$OUT/$name-app.log" 2>&1 &
+  local pid=$!
+  until curl -sf "http://localhost:$PORT/actuator/health" > /dev/null; do sleep 0.5; done
+  wrk -t4 -c50 -d10s "http://localhost:$PORT/api/messages?limit=20" > /dev/null # warm-up
+  wrk -t8 -c"$CONNECTIONS" -d"$DURATION" --timeout 10s --latency "http://localhost:$PORT/api/messages?limit=20" | tee "$OUT/$name.txt"
+  kill "$pid"; wait "$pid" || true
+}
+run platform
+run virtual --spring.profiles.active=virtual
+printf '\n%-10s %15s %12s\n' mode requests/sec p99
+for name in platform virtual; do
+  rps="$(awk '/Requests\/sec/ {print $2}' "$OUT/$name.txt")"
+  p99="$(awk '$1 == "99%" {print $2}' "$OUT/$name.txt")"
+  printf '%-10s %15s %12s\n' "$name" "$rps" "$p99"
+done
@@ -0,0 +1,58 @@
+#!/usr/bin/env bash
+# Runs the Flyway migrations (SQL and Java) against in-memory H2, native and PostgreSQL compatibility mode, and checks
+# that each feed query is answered from its index. Only the EXPLAIN result of each query is matched, one query at a time.
+# Requires: Maven. Usage: loadtest/explain-feed.sh
+set -euo pipefail
+cd "$(dirname "$0")/.."
+OUT="target/explain"
+mkdir -p "$OUT"
+mvn -B -q compile dependency:build-classpath -Dmdep.includeScope=runtime -Dmdep.outputFile="$OUT/cp.txt"
+cat > "$OUT/ExplainFeed.java" <<'JAVA'
+import org.flywaydb.core.Flyway;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+public class ExplainFeed {
+    // Expected index, then the query as the application issues it.
+    private static final String[][] CHECKS = {
+        {"idx_messages_ts_id", "SELECT id, user_id, phone_masked, text, ts, likes, reply_count FROM messages ORDER BY ts DESC, id DESC LIMIT 21"},
+        {"idx_messages_ts_id", "SELECT id, user_id, phone_masked, text, ts, likes, reply_count FROM messages"
+                + " WHERE ts < TIMESTAMP WITH TIME ZONE '2024-01-01 00:00:00+00' OR (ts = TIMESTAMP WITH TIME ZONE '2024-01-01 00:00:00+00' AND id < RANDOM_UUID())"
+                + " ORDER BY ts DESC, id DESC LIMIT 21"},
+        {"idx_replies_message_path", "SELECT t.id FROM (SELECT r.id AS id, r.message_id AS message_id, r.path AS path,"
+                + " ROW_NUMBER() OVER (PARTITION BY r.message_id ORDER BY r.path) AS rn FROM replies r"
+                + " WHERE r.message_id IN (RANDOM_UUID(), RANDOM_UUID()) AND r.path >= '' AND r.depth <= 3) t WHERE t.rn <= 51 ORDER BY t.message_id, t.path"},
+        {"idx_replies_message_path", "SELECT r.id FROM replies r WHERE r.message_id = RANDOM_UUID()"
+                + " AND r.path >= '0000000000000000000a' AND r.path < '0000000000000000000ag' AND r.depth <= 3 ORDER BY r.path"},
+        {"idx_likes_ts", "SELECT COUNT(*) FROM likes WHERE ts > TIMESTAMP WITH TIME ZONE '2024-01-01 00:00:00+00'"},
+    };
+    public static void main(String[] args) throws Exception {
+        String url = args[0];
+        Flyway.configure().dataSource(url, "sa", "").load().migrate();
+        int missing = 0;
+        try (Connection connection = DriverManager.getConnection(url, "sa", ""); Statement statement = connection.createStatement()) {
+            for (String[] check : CHECKS) {
+                String plan;
+                try (ResultSet rs = statement.executeQuery("EXPLAIN " + check[1])) {
+                    rs.next();
+                    plan = rs.getString(1);
+                }
+                System.out.println(plan + "\n");
+                if (!plan.toLowerCase().contains(check[0])) {
+                    System.out.println("missing index use: " + check[0] + "\n");
+                    missing++;
+                }
+            }
+        }
+        System.exit(missing == 0 ? 0 : 1);
+    }
+}
+JAVA
+status=0
+for mode in "" ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH"; do
+  url="jdbc:h2:mem:plan;DB_CLOSE_DELAY=-1$mode"
+  echo "== $url"
+  java -cp "target/classes:$(cat "$OUT/cp.txt")" "$OUT/ExplainFeed.java" "$url" || status=1
+done
+exit "$status"
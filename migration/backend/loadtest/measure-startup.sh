@@ -0,0 +1,44 @@
+#!/usr/bin/env bash
+# Compares startup of the default jar with the faststart build (AOT context plus CDS archive).
+# For each mode and run it records: Spring's application.ready.time, wall-clock time until /actuator/health answers,
+# and the latency of the first GET /api/messages. Each run uses a fresh in-memory database on the same port.
+# Requires: Java 17+, curl. Usage: loadtest/measure-startup.sh [runs]
+set -euo pipefail
+cd "$(dirname "$0")/.."
+RUNS="${1:-5}"
+PORT=18081
+OUT="target/startup"
+JAR="liuyan-backend-1.0.0-exec.jar"
+COMMON=(--server.port="$PORT" --logging.level.root=WARN --logging.level.com.liuyansh=WARN)
+mkdir -p "$OUT"
+mvn -B -q -DskipTests package
+mkdir -p "$OUT/default" && cp "target/$JAR" "$OUT/default/app.jar"
+mvn -B -q -Pfaststart -DskipTests package
+now_ms() { date +%s%3N; }
+measure() {
+  local name="$1" run="$2" dir="$3"; shift 3
+  local start ready_ms first_ms ready_time pid
+  start="$(now_ms)"
+  (cd "$dir" && exec java "$@" "${COMMON[@]}" --spring.datasource.url="jdbc:h2:mem:startup-$name-$run") > "$OUT/$name-$run.log" 2>&1 &
+  pid=$!
+  until curl -sf "http://localhost:$PORT/actuator/health" > /dev/null; do sleep 0.05; done
+  ready_ms=$(( $(now_ms) - start ))
+  first_ms="$(curl -s -o /dev/null -w '%{time_total}' "http://localhost:$PORT/api/messages?limit=20" | awk '{printf "%d", $1 * 1000}')"
+  ready_time="$(curl -s "http://localhost:$PORT/actuator/metrics/application.ready.time" | sed -n 's/.*"value":\([0-9.E-]*\).*/\1/p' | awk '{printf "%d", $1 * 1000}')"
+  kill "$pid"; wait "$pid" || true
+  printf '%s %s %s %s\n' "$name" "$ready_time" "$ready_ms" "$first_ms" >> "$OUT/results.txt"
+}
+: > "$OUT/results.txt"
+for run in $(seq 1 "$RUNS"); do
+  measure default "$run" "$OUT/default" -jar app.jar
+  measure faststart "$run" target/faststart -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true \
+          -jar "$JAR" --spring.profiles.active=faststart
+done
+median() { sort -n | awk '{v[NR] = $1} END {print v[int((NR + 1) / 2)]}'; }
+printf '\n%-10s %18s %18s %18s\n' mode ready.time-ms health-up-ms first-request-ms
+for name in default faststart; do
+  printf '%-10s %18s %18s %18s\n' "$name" \
+    "$(awk -v n="$name" '$1 == n {print $2}' "$OUT/results.txt" | median)" \
+    "$(awk -v n="$name" '$1 == n {print $3}' "$OUT/results.txt" | median)" \
+    "$(awk -v n="$name" '$1 == n {print $4}' "$OUT/results.txt" | median)"
+done
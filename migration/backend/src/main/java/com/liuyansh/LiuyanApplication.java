@@ -3,11 +3,13 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 @SpringBootApplication
 @EnableJpaRepositories(basePackages = "com.liuyansh.repository")
 @EntityScan(basePackages = "com.liuyansh.entity")
 @EnableScheduling
+@EnableAsync
 public class LiuyanApplication {
     public static void main(String[] args) {
         SpringApplication.run(LiuyanApplication.class, args);
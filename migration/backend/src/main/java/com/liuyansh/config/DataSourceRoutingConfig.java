@@ -0,0 +1,73 @@
+package com.liuyansh.config;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.StringUtils;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+// Replaces the single auto-configured pool with a primary pool plus replica pools. Read-only transactions
+// (the feed, reply threads, search rebuilds, digest rendering, snapshot export) go to a healthy replica;
+// everything else, including Flyway and Quartz, stays on the primary.
+@Configuration
+@ConditionalOnProperty(name = "liuyan.datasource.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+    private ReadReplicaRoutingDataSource routingDataSource;
+    // Bound like the auto-configured pool, so spring.datasource.* and spring.datasource.hikari.* keep applying.
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName("primary");
+        return pool;
+    }
+    @Bean
+    public ReadReplicaRoutingDataSource readReplicaRoutingDataSource(HikariDataSource primaryDataSource, DataSourceProperties properties,
+                                                                     MeterRegistry meterRegistry,
+                                                                     @Value("${liuyan.datasource.replica.urls:}") List<String> urls,
+                                                                     @Value("${liuyan.datasource.replica.username:}") String username,
+                                                                     @Value("${liuyan.datasource.replica.password:}") String password,
+                                                                     @Value("${liuyan.datasource.replica.maximum-pool-size:10}") int maximumPoolSize,
+                                                                     @Value("${liuyan.datasource.replica.lag-query}") String lagQuery,
+                                                                     @Value("${liuyan.datasource.replica.max-lag:5s}") Duration maxLag,
+                                                                     @Value("${liuyan.datasource.replica.read-your-writes-window:10s}") Duration readYourWritesWindow) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            if (!StringUtils.hasText(url)) continue;
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + replicas.size());
+            pool.setJdbcUrl(url.trim());
+            pool.setDriverClassName(properties.determineDriverClassName());
+            pool.setUsername(StringUtils.hasText(username) ? username : properties.determineUsername());
+            pool.setPassword(StringUtils.hasText(password) ? password : properties.determinePassword());
+            pool.setMaximumPoolSize(maximumPoolSize);
+            pool.setReadOnly(true);
+            // Replicas may be down at boot; they are then simply reported unhealthy instead of failing startup.
+            pool.setInitializationFailTimeout(-1);
+            pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.add(pool);
+        }
+        routingDataSource = new ReadReplicaRoutingDataSource(primaryDataSource, replicas, lagQuery, maxLag, readYourWritesWindow, meterRegistry);
+        return routingDataSource;
+    }
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadReplicaRoutingDataSource readReplicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readReplicaRoutingDataSource);
+    }
+    @Scheduled(fixedDelayString = "${liuyan.datasource.replica.health-check-interval-ms:2000}",
+               initialDelayString = "${liuyan.datasource.replica.health-check-interval-ms:2000}")
+    public void checkReplicas() {
+        if (routingDataSource != null) routingDataSource.checkReplicas();
+    }
+}
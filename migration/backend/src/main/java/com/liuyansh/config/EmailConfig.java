@@ -0,0 +1,16 @@
+package com.liuyansh.config;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+import java.time.Duration;
+@Configuration
+public class EmailConfig {
+    @Bean
+    public RestTemplate emailRestTemplate(RestTemplateBuilder builder,
+                                          @Value("${liuyan.email.http.connect-timeout:5s}") Duration connectTimeout,
+                                          @Value("${liuyan.email.http.read-timeout:15s}") Duration readTimeout) {
+        return builder.setConnectTimeout(connectTimeout).setReadTimeout(readTimeout).build();
+    }
+}
@@ -0,0 +1,36 @@
+package com.liuyansh.config;
+import com.liuyansh.service.AuthService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    private static final List<SimpleGrantedAuthority> USER_AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+    private static final List<SimpleGrantedAuthority> ADMIN_AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN"));
+    private final AuthService authService;
+    private final Set<String> adminUserIds;
+    public JwtAuthenticationFilter(AuthService authService, Set<String> adminUserIds) {
+        this.authService = authService;
+        this.adminUserIds = adminUserIds;
+    }
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith("Bearer ")) {
+            // Invalid or expired tokens simply leave the request anonymous; @PreAuthorize decides what that means.
+            authService.authenticate(header.substring(7)).ifPresent(principal ->
+                    SecurityContextHolder.getContext().setAuthentication(
+                            new UsernamePasswordAuthenticationToken(principal, null,
+                                    adminUserIds.contains(principal.userId()) ? ADMIN_AUTHORITIES : USER_AUTHORITIES)));
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -1,18 +1,24 @@
 package com.liuyansh.config;
-import com.liuyansh.service.EmailService;
+import com.liuyansh.service.EmailDispatchService;
 import org.quartz.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.quartz.SchedulerFactoryBeanCustomizer;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 @Configuration
 public class QuartzConfig {
+    @DisallowConcurrentExecution
     public static class EmailJob implements Job {
-        private final EmailService emailService;
-        public EmailJob(EmailService emailService) {
-            this.emailService = emailService;
+        private final EmailDispatchService emailDispatchService;
+        public EmailJob(EmailDispatchService emailDispatchService) {
+            this.emailDispatchService = emailDispatchService;
         }
         @Override
         public void execute(JobExecutionContext context) {
-            emailService.sendWeeklyEmail();
+            // Keyed by the scheduled fire time, so a re-fired trigger cannot enqueue the same digest twice.
+            emailDispatchService.enqueueWeeklyDigest("scheduled:" + context.getScheduledFireTime().toInstant());
         }
     }
     @Bean
@@ -27,7 +33,17 @@ public class QuartzConfig {
         return TriggerBuilder.newTrigger()
                 .forJob(emailJobDetail())
                 .withIdentity("emailTrigger")
-                .withSchedule(CronScheduleBuilder.cronSchedule("0 0 20 ? * MON-FRI")) // Mon-Fri at 8 PM
+                // overwrite-existing-jobs re-registers the trigger on every node start; starting from the next whole second
+                // keeps a node that boots right after a firing from computing that same fire time again.
+                .startAt(DateBuilder.evenSecondDateAfterNow())
+                .withSchedule(CronScheduleBuilder.cronSchedule("0 0 20 ? * MON-FRI") // Mon-Fri at 8 PM
+                        .withMisfireHandlingInstructionFireAndProceed()) // Fire once after an outage, not once per missed day
                 .build();
     }
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SchedulerFactoryBeanCustomizer virtualThreadQuartzCustomizer() {
+        // Jobs run on virtual threads instead of Quartz's fixed SimpleThreadPool.
+        return schedulerFactoryBean -> schedulerFactoryBean.setTaskExecutor(new VirtualThreadTaskExecutor("quartz-"));
+    }
 }
\ No newline at end of file
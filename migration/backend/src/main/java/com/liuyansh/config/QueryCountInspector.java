@@ -0,0 +1,17 @@
+package com.liuyansh.config;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+// Counts SQL statements Hibernate prepares on the current thread, so a request can report how many it issued.
+public class QueryCountInspector implements StatementInspector {
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+    public void reset() {
+        COUNT.get()[0] = 0;
+    }
+    public int count() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,140 @@
+package com.liuyansh.config;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.liuyansh.dto.AuthPrincipal;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+// Only meaningful behind a LazyConnectionDataSourceProxy: the key must be chosen at the first statement,
+// after the transaction manager has published whether the transaction is read-only.
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(ReadReplicaRoutingDataSource.class);
+    private static final String PRIMARY = "primary";
+    private static final class Replica {
+        final String name;
+        final HikariDataSource pool;
+        volatile boolean healthy;
+        volatile double lagSeconds = Double.NaN;
+        Replica(String name, HikariDataSource pool) {
+            this.name = name;
+            this.pool = pool;
+        }
+    }
+    private final List<Replica> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    private final String lagQuery;
+    private final double maxLagSeconds;
+    // Users who wrote recently keep reading from the primary until the replicas have certainly caught up.
+    private final Cache<String, Boolean> recentWriters;
+    private final Counter primaryReads;
+    private final Counter pinnedReads;
+    private final Counter fallbackReads;
+    private final Counter replicaReads;
+    public ReadReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicaPools, String lagQuery,
+                                        Duration maxLag, Duration readYourWritesWindow, MeterRegistry meterRegistry) {
+        this.replicas = replicaPools.stream().map(pool -> new Replica(pool.getPoolName(), pool)).toList();
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(readYourWritesWindow)
+                .maximumSize(100_000)
+                .build();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (Replica replica : replicas) {
+            targets.put(replica.name, replica.pool);
+            Gauge.builder("datasource.replica.lag.seconds", replica, r -> r.lagSeconds)
+                    .tag("pool", replica.name)
+                    .register(meterRegistry);
+            Gauge.builder("datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .tag("pool", replica.name)
+                    .register(meterRegistry);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        this.primaryReads = routeCounter("primary", meterRegistry);
+        this.pinnedReads = routeCounter("primary-read-your-writes", meterRegistry);
+        this.fallbackReads = routeCounter("primary-fallback", meterRegistry);
+        this.replicaReads = routeCounter("replica", meterRegistry);
+    }
+    private static Counter routeCounter(String route, MeterRegistry meterRegistry) {
+        return Counter.builder("datasource.routing").tag("route", route).register(meterRegistry);
+    }
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        checkReplicas();
+    }
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String userId = currentUserId();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (userId != null) recentWriters.put(userId, Boolean.TRUE);
+            primaryReads.increment();
+            return PRIMARY;
+        }
+        if (userId != null && recentWriters.getIfPresent(userId) != null) {
+            pinnedReads.increment();
+            return PRIMARY;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                replicaReads.increment();
+                return replica.name;
+            }
+        }
+        fallbackReads.increment();
+        return PRIMARY;
+    }
+    // A replica serves reads only while its lag query succeeds and reports no more than the allowed lag.
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection connection = replica.pool.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(Math.max(1, (int) Math.ceil(maxLagSeconds)));
+                try (ResultSet rs = statement.executeQuery(lagQuery)) {
+                    replica.lagSeconds = rs.next() ? rs.getDouble(1) : Double.NaN;
+                }
+                healthy = replica.lagSeconds <= maxLagSeconds;
+            } catch (Exception e) {
+                replica.lagSeconds = Double.NaN;
+                healthy = false;
+                if (replica.healthy) logger.warn("Replica {} failed its health check: {}", replica.name, e.getMessage());
+            }
+            if (replica.healthy != healthy) {
+                logger.info("Replica {} is now {} (lag {}s)", replica.name, healthy ? "serving reads" : "bypassed", replica.lagSeconds);
+            }
+            replica.healthy = healthy;
+        }
+    }
+    @Override
+    public void destroy() {
+        replicas.forEach(replica -> replica.pool.close());
+    }
+    private static String currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof AuthPrincipal principal ? principal.userId() : null;
+    }
+}
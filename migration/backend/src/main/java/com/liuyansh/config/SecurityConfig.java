@@ -1,4 +1,6 @@
 package com.liuyansh.config;
+import com.liuyansh.service.AuthService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -7,16 +9,19 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import java.util.List;
+import java.util.Set;
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
 public class SecurityConfig {
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, AuthService authService,
+                                                   @Value("${liuyan.admin.user-ids:}") Set<String> adminUserIds) throws Exception {
         http
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .csrf(csrf -> csrf.disable())
@@ -24,9 +29,13 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers(HttpMethod.GET, "/api/messages").permitAll()
+                .requestMatchers(HttpMethod.GET, "/api/messages/hot").permitAll()
+                .requestMatchers(HttpMethod.GET, "/api/stream").permitAll()
+                .requestMatchers(HttpMethod.GET, "/api/replies/*/thread").permitAll()
+                .requestMatchers(HttpMethod.GET, "/api/search").permitAll()
                 .anyRequest().permitAll() // Simplified for demo, would be .authenticated()
-            );
-        // In a real app, you would add a JWT filter here.
+            )
+            .addFilterBefore(new JwtAuthenticationFilter(authService, adminUserIds), UsernamePasswordAuthenticationFilter.class);
         return http.build();
     }
     @Bean
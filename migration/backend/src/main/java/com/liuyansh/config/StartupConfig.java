@@ -0,0 +1,21 @@
+package com.liuyansh.config;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+@Configuration
+public class StartupConfig {
+    // Marks the beans named in liuyan.startup.lazy-beans as lazy; their injection points are @Lazy so nothing pulls them in early.
+    // Under AOT the post-processor runs during the build, so the faststart list is baked into the generated context.
+    @Bean
+    public static BeanFactoryPostProcessor lazyStartupBeans(Environment environment) {
+        String[] names = environment.getProperty("liuyan.startup.lazy-beans", String[].class, new String[0]);
+        return beanFactory -> {
+            for (String name : names) {
+                if (beanFactory.containsBeanDefinition(name.trim())) {
+                    beanFactory.getBeanDefinition(name.trim()).setLazyInit(true);
+                }
+            }
+        };
+    }
+}
@@ -1,5 +1,8 @@
 package com.liuyansh.controller;
+import com.liuyansh.dto.OtpRequest;
 import com.liuyansh.service.AuthService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.Map;
@@ -11,14 +14,20 @@ public class AuthController {
         this.authService = authService;
     }
     @PostMapping("/request-otp")
-    public ResponseEntity<Map<String, Object>> requestOtp(@RequestBody Map<String, String> payload) {
+    public ResponseEntity<Map<String, Object>> requestOtp(@RequestBody Map<String, String> payload, HttpServletRequest request) {
         String phone = payload.get("phone");
         if (phone == null || !phone.matches("^\\d{11}$")) {
             return ResponseEntity.badRequest().body(Map.of("success", false, "error", "Invalid phone number format."));
         }
-        return authService.requestOtp(phone)
-                .map(code -> ResponseEntity.ok(Map.of("success", true, "data", Map.of("demoCode", code))))
-                .orElse(ResponseEntity.badRequest().body(Map.of("success", false, "error", "Too many requests. Please wait 60 seconds.")));
+        // getRemoteAddr is the client address as reported by a trusted proxy (server.forward-headers-strategy).
+        OtpRequest otp = authService.requestOtp(phone, request.getRemoteAddr());
+        if (!otp.issued()) {
+            long seconds = Math.max(1, (otp.retryAfter().toMillis() + 999) / 1000);
+            return ResponseEntity.badRequest()
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(seconds))
+                    .body(Map.of("success", false, "error", "Too many requests. Please wait " + seconds + " seconds."));
+        }
+        return ResponseEntity.ok(Map.of("success", true, "data", Map.of("demoCode", otp.code())));
     }
     @PostMapping("/verify-otp")
     public ResponseEntity<Map<String, Object>> verifyOtp(@RequestBody Map<String, String> payload) {
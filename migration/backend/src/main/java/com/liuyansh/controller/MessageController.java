@@ -1,39 +1,131 @@
 package com.liuyansh.controller;
+import com.liuyansh.dto.AuthPrincipal;
+import com.liuyansh.dto.FeedSnapshot;
+import com.liuyansh.dto.LikeToggle;
+import com.liuyansh.service.HotMessageService;
 import com.liuyansh.service.MessageService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 @RestController
 @RequestMapping("/api")
 public class MessageController {
     private final MessageService messageService;
-    public MessageController(MessageService messageService) {
+    private final HotMessageService hotMessageService;
+    public MessageController(MessageService messageService, HotMessageService hotMessageService) {
         this.messageService = messageService;
+        this.hotMessageService = hotMessageService;
     }
     @GetMapping("/messages")
-    public ResponseEntity<Map<String, Object>> getMessages() {
-        return ResponseEntity.ok(Map.of("success", true, "data", Map.of("items", messageService.getAllMessages())));
+    public ResponseEntity<?> getMessages(@RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        FeedSnapshot snapshot;
+        try {
+            snapshot = messageService.getFeedSnapshot(cursor, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+        }
+        boolean gzip = acceptsGzip(acceptEncoding);
+        // Each encoding is its own representation, so it gets its own strong tag; both validate the same content.
+        String etag = gzip ? gzipTag(snapshot.etag()) : snapshot.etag();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setCacheControl(CacheControl.noCache());
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        headers.set("X-Board-Revision", Long.toString(snapshot.revision()));
+        if (matches(ifNoneMatch, snapshot.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (gzip) headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return ResponseEntity.ok().headers(headers).body(gzip ? snapshot.gzip() : snapshot.json());
+    }
+    private static String gzipTag(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipTag(etag))) return true;
+        }
+        return false;
+    }
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) continue;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().replace(" ", "");
+                if (param.startsWith("q=") && param.substring(2).matches("0(\\.0*)?")) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+    @GetMapping("/messages/hot")
+    public ResponseEntity<Map<String, Object>> getHotMessages(@RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(Map.of("success", true, "data", hotMessageService.hot(limit)));
     }
     @PostMapping("/messages")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<Map<String, Object>> createMessage(@RequestBody Map<String, String> payload) {
-        // In a real app, get user details from SecurityContext
-        String userId = "dummy-user-id";
-        String phoneMasked = "123****5678";
-        return ResponseEntity.ok(Map.of("success", true, "data", messageService.createMessage(payload.get("text"), userId, phoneMasked)));
+    public ResponseEntity<Map<String, Object>> createMessage(@AuthenticationPrincipal AuthPrincipal principal, @RequestBody Map<String, String> payload) {
+        return ResponseEntity.ok(Map.of("success", true, "data", messageService.createMessage(payload.get("text"), principal.userId(), principal.phoneMasked())));
     }
     @PostMapping("/replies")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<Map<String, Object>> createReply() {
-        return ResponseEntity.status(501).body(Map.of("success", false, "error", "Not Implemented"));
+    public ResponseEntity<Map<String, Object>> createReply(@AuthenticationPrincipal AuthPrincipal principal, @RequestBody Map<String, String> payload) {
+        try {
+            UUID messageId = parseId(payload.get("messageId"), "messageId");
+            UUID parentReplyId = payload.get("parentReplyId") != null ? parseId(payload.get("parentReplyId"), "parentReplyId") : null;
+            return messageService.createReply(messageId, parentReplyId, payload.get("text"), principal.userId(), principal.phoneMasked())
+                    .map(reply -> ResponseEntity.ok(Map.<String, Object>of("success", true, "data", reply)))
+                    .orElse(ResponseEntity.status(404).body(Map.of("success", false, "error", "Message not found.")));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+    private static UUID parseId(String value, String field) {
+        if (value == null || value.isBlank()) throw new IllegalArgumentException(field + " is required.");
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(field + " is not a valid id.");
+        }
+    }
+    @GetMapping("/replies/{replyId}/thread")
+    public ResponseEntity<Map<String, Object>> getReplyThread(@PathVariable UUID replyId) {
+        return messageService.getReplyThread(replyId)
+                .map(thread -> ResponseEntity.ok(Map.<String, Object>of("success", true, "data", thread)))
+                .orElse(ResponseEntity.status(404).body(Map.of("success", false, "error", "Reply not found.")));
     }
     @PutMapping("/likes/{targetId}")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<Map<String, Object>> toggleLike(@PathVariable UUID targetId, @RequestParam String type) {
-        String userId = "dummy-user-id";
+    public ResponseEntity<Map<String, Object>> toggleLike(@AuthenticationPrincipal AuthPrincipal principal, @PathVariable UUID targetId, @RequestParam String type) {
+        String userId = principal.userId();
         boolean liked = messageService.toggleLike(userId, targetId, type);
         return ResponseEntity.ok(Map.of("success", true, "data", Map.of("liked", liked)));
     }
-}
\ No newline at end of file
+    @PostMapping("/likes/batch")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Map<String, Object>> toggleLikes(@AuthenticationPrincipal AuthPrincipal principal, @RequestBody Map<String, List<LikeToggle>> payload) {
+        List<LikeToggle> toggles = payload.getOrDefault("toggles", List.of());
+        try {
+            return ResponseEntity.ok(Map.of("success", true, "data", messageService.toggleLikes(principal.userId(), toggles)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.liuyansh.controller;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+// Local stand-in for an HTTP email provider; point Settings.apiUrl at http://localhost:8080/mock/email.
+@RestController
+@RequestMapping("/mock/email")
+@Profile("mock-provider")
+public class MockEmailProviderController {
+    private static final Logger logger = LoggerFactory.getLogger(MockEmailProviderController.class);
+    private final Map<String, String> deliveries = new ConcurrentHashMap<>();
+    private final double failureRate;
+    public MockEmailProviderController(@Value("${liuyan.mock-provider.failure-rate:0}") double failureRate) {
+        this.failureRate = failureRate;
+    }
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> send(@RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                                    @RequestBody Map<String, Object> payload) {
+        if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+            return ResponseEntity.status(503).body(Map.of("success", false, "error", "Simulated provider outage."));
+        }
+        String key = idempotencyKey != null ? idempotencyKey : UUID.randomUUID().toString();
+        String existing = deliveries.putIfAbsent(key, UUID.randomUUID().toString());
+        if (existing == null) logger.info("Mock provider accepted email to {} ({})", payload.get("to"), key);
+        return ResponseEntity.ok(Map.of("success", true, "id", deliveries.get(key), "duplicate", existing != null));
+    }
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> deliveries() {
+        return ResponseEntity.ok(Map.of("success", true, "data", Map.copyOf(deliveries)));
+    }
+}
@@ -0,0 +1,20 @@
+package com.liuyansh.controller;
+import com.liuyansh.service.SearchService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.Map;
+@RestController
+@RequestMapping("/api")
+public class SearchController {
+    private final SearchService searchService;
+    public SearchController(SearchService searchService) {
+        this.searchService = searchService;
+    }
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> search(@RequestParam String q,
+                                                      @RequestParam(defaultValue = "0") int page,
+                                                      @RequestParam(defaultValue = "20") int size) {
+        if (q.isBlank()) return ResponseEntity.badRequest().body(Map.of("success", false, "error", "Query must not be empty."));
+        return ResponseEntity.ok(Map.of("success", true, "data", searchService.search(q, page, size)));
+    }
+}
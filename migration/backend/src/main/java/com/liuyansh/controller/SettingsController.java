@@ -1,33 +1,71 @@
 package com.liuyansh.controller;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.liuyansh.entity.EmailDispatch;
 import com.liuyansh.entity.Settings;
 import com.liuyansh.repository.SettingsRepository;
+import com.liuyansh.service.EmailDispatchService;
 import com.liuyansh.service.EmailService;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.UUID;
 @RestController
 @RequestMapping("/api/settings")
 public class SettingsController {
     private final SettingsRepository settingsRepository;
+    private final EmailDispatchService emailDispatchService;
     private final EmailService emailService;
-    public SettingsController(SettingsRepository settingsRepository, EmailService emailService) {
+    private final ObjectMapper objectMapper;
+    public SettingsController(SettingsRepository settingsRepository, EmailDispatchService emailDispatchService, @Lazy EmailService emailService,
+                              ObjectMapper objectMapper) {
         this.settingsRepository = settingsRepository;
+        this.emailDispatchService = emailDispatchService;
         this.emailService = emailService;
+        this.objectMapper = objectMapper;
     }
     @GetMapping("/email")
     public ResponseEntity<Map<String, Object>> getSettings() {
         Settings settings = settingsRepository.findById("app-settings").orElse(new Settings());
-        return ResponseEntity.ok(Map.of("success", true, "data", settings));
+        // sendLogs keeps its place in the response, now read from the capped email_send_logs table.
+        Map<String, Object> data = objectMapper.convertValue(settings, new TypeReference<LinkedHashMap<String, Object>>() {});
+        data.put("sendLogs", emailService.recentSendLogs());
+        return ResponseEntity.ok(Map.of("success", true, "data", data));
     }
     @PostMapping("/email")
     public ResponseEntity<Map<String, Object>> saveSettings(@RequestBody Settings newSettings) {
-        newSettings.setId("app-settings");
-        Settings savedSettings = settingsRepository.save(newSettings);
+        // Copy editable fields onto the stored row so lastSentTs and the version stay intact.
+        Settings settings = settingsRepository.findById("app-settings").orElseGet(Settings::new);
+        settings.setRecipient(newSettings.getRecipient());
+        settings.setProvider(newSettings.getProvider());
+        settings.setApiUrl(newSettings.getApiUrl());
+        settings.setApiKey(newSettings.getApiKey());
+        settings.setTimezone(newSettings.getTimezone());
+        Settings savedSettings = settingsRepository.save(settings);
         return ResponseEntity.ok(Map.of("success", true, "data", savedSettings));
     }
     @PostMapping("/send-weekly")
-    public ResponseEntity<Map<String, Object>> sendWeekly() {
-        emailService.sendWeeklyEmail();
-        return ResponseEntity.ok(Map.of("success", true, "data", Map.of("status", "Email job triggered.", "sentCount", -1)));
+    public ResponseEntity<Map<String, Object>> sendWeekly(@RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        String key = "manual:" + (idempotencyKey != null ? idempotencyKey : UUID.randomUUID().toString());
+        EmailDispatch dispatch = emailDispatchService.enqueueWeeklyDigest(key);
+        return ResponseEntity.accepted().body(Map.of("success", true, "data", toStatus(dispatch)));
+    }
+    @GetMapping("/send-weekly/{jobId}")
+    public ResponseEntity<Map<String, Object>> sendWeeklyStatus(@PathVariable UUID jobId) {
+        return emailDispatchService.find(jobId)
+                .map(dispatch -> ResponseEntity.ok(Map.<String, Object>of("success", true, "data", toStatus(dispatch))))
+                .orElse(ResponseEntity.status(404).body(Map.of("success", false, "error", "Job not found.")));
+    }
+    private Map<String, Object> toStatus(EmailDispatch dispatch) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("jobId", dispatch.getId());
+        status.put("status", dispatch.getStatus());
+        status.put("attempts", dispatch.getAttempts());
+        status.put("sentCount", dispatch.getSentCount());
+        status.put("nextAttemptAt", dispatch.getNextAttemptAt());
+        status.put("lastError", dispatch.getLastError());
+        return status;
     }
 }
\ No newline at end of file
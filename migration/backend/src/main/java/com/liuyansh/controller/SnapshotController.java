@@ -0,0 +1,68 @@
+package com.liuyansh.controller;
+import com.liuyansh.service.BoardSnapshotService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Map;
+@RestController
+@RequestMapping("/api/admin/snapshot")
+@PreAuthorize("hasRole('ADMIN')")
+public class SnapshotController {
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotController.class);
+    private final BoardSnapshotService boardSnapshotService;
+    public SnapshotController(BoardSnapshotService boardSnapshotService) {
+        this.boardSnapshotService = boardSnapshotService;
+    }
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> export() throws IOException {
+        // The snapshot is written to disk first so the read transaction is not held open by a slow client.
+        Path file = Files.createTempFile("liuyan-snapshot-", ".lysnap");
+        try {
+            boardSnapshotService.export(file);
+        } catch (RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                deleteQuietly(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(Files.size(file))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"liuyan-" + Instant.now().getEpochSecond() + ".lysnap\"")
+                .body(body);
+    }
+    @PostMapping(consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Map<String, Object>> importSnapshot(HttpServletRequest request, @RequestParam(defaultValue = "false") boolean replace) throws IOException {
+        // Spooled to disk so the reader can memory-map it.
+        Path file = Files.createTempFile("liuyan-snapshot-", ".lysnap");
+        try {
+            Files.copy(request.getInputStream(), file, StandardCopyOption.REPLACE_EXISTING);
+            return ResponseEntity.ok(Map.of("success", true, "data", boardSnapshotService.importSnapshot(file, replace)));
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete temporary snapshot file {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.liuyansh.controller;
+import com.liuyansh.service.FeedEventBroadcaster;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+@RestController
+@RequestMapping("/api")
+public class StreamController {
+    private final FeedEventBroadcaster broadcaster;
+    public StreamController(FeedEventBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+    }
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                             @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+        // EventSource sends Last-Event-ID itself on reconnect; the query parameter covers clients that cannot set headers.
+        return broadcaster.subscribe(lastEventId != null ? lastEventId : lastEventIdParam)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.status(503).build());
+    }
+}
@@ -0,0 +1,3 @@
+package com.liuyansh.dto;
+public record ActivityTotals(long messages, long replies, long likes) {
+}
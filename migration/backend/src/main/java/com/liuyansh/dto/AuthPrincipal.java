@@ -0,0 +1,3 @@
+package com.liuyansh.dto;
+public record AuthPrincipal(String userId, String phoneMasked) {
+}
@@ -0,0 +1,24 @@
+package com.liuyansh.dto;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+public record FeedCursor(Instant ts, UUID id) {
+    public String encode() {
+        String raw = ts.getEpochSecond() + ":" + ts.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    // No cursor means the first page; a cursor that does not decode is rejected rather than silently restarting the feed.
+    public static Optional<FeedCursor> decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) return Optional.empty();
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 3);
+            Instant ts = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            return Optional.of(new FeedCursor(ts, UUID.fromString(parts[2])));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | DateTimeException | ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid cursor.", e);
+        }
+    }
+}
@@ -0,0 +1,3 @@
+package com.liuyansh.dto;
+public record FeedEvent(long id, String type, Object data) {
+}
@@ -0,0 +1,4 @@
+package com.liuyansh.dto;
+import java.util.List;
+public record FeedPage(List<MessageView> items, String nextCursor) {
+}
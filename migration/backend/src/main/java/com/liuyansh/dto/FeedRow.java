@@ -0,0 +1,5 @@
+package com.liuyansh.dto;
+import java.time.Instant;
+import java.util.UUID;
+public record FeedRow(UUID id, String userId, String phoneMasked, String text, Instant ts, int likes, int replyCount) {
+}
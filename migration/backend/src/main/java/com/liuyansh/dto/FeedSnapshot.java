@@ -0,0 +1,4 @@
+package com.liuyansh.dto;
+// A feed page together with its response body pre-encoded as JSON and gzip, and a strong ETag over the JSON bytes.
+public record FeedSnapshot(FeedPage page, byte[] json, byte[] gzip, String etag, long revision) {
+}
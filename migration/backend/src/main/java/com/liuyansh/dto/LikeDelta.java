@@ -0,0 +1,7 @@
+package com.liuyansh.dto;
+import java.util.UUID;
+public record LikeDelta(UUID targetId, String targetType, int delta) {
+    public LikeDelta plus(LikeDelta other) {
+        return new LikeDelta(targetId, targetType, delta + other.delta);
+    }
+}
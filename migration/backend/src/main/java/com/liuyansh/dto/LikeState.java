@@ -0,0 +1,4 @@
+package com.liuyansh.dto;
+import java.util.UUID;
+public record LikeState(UUID targetId, String type, boolean liked) {
+}
@@ -0,0 +1,4 @@
+package com.liuyansh.dto;
+import java.util.UUID;
+public record LikeToggle(UUID targetId, String type) {
+}
@@ -0,0 +1,7 @@
+package com.liuyansh.dto;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+public record MessageView(UUID id, String userId, String phoneMasked, String text, Instant ts, int likes, int replyCount, List<ReplyView> replies,
+                          boolean hasMoreReplies) {
+}
@@ -0,0 +1,8 @@
+package com.liuyansh.dto;
+import java.time.Duration;
+// Either an issued code or, when rate limited, how long the client has to wait before asking again.
+public record OtpRequest(String code, Duration retryAfter) {
+    public boolean issued() {
+        return code != null;
+    }
+}
@@ -0,0 +1,4 @@
+package com.liuyansh.dto;
+import java.util.UUID;
+public record ReplyCreated(UUID messageId, UUID parentReplyId, ReplyView reply) {
+}
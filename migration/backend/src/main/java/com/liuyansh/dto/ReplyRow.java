@@ -0,0 +1,5 @@
+package com.liuyansh.dto;
+import java.time.Instant;
+import java.util.UUID;
+public record ReplyRow(UUID id, UUID messageId, UUID parentReplyId, String userId, String phoneMasked, String text, Instant ts, int likes, int depth) {
+}
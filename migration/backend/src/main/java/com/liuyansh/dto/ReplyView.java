@@ -0,0 +1,6 @@
+package com.liuyansh.dto;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+public record ReplyView(UUID id, String userId, String phoneMasked, String text, Instant ts, int likes, List<ReplyView> replies) {
+}
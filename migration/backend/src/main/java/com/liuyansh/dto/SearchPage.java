@@ -0,0 +1,4 @@
+package com.liuyansh.dto;
+import java.util.List;
+public record SearchPage(int total, int page, int size, List<SearchResult> items) {
+}
@@ -0,0 +1,5 @@
+package com.liuyansh.dto;
+import java.time.Instant;
+import java.util.UUID;
+public record SearchResult(String type, UUID id, UUID messageId, String phoneMasked, String text, Instant ts, float score) {
+}
@@ -0,0 +1,19 @@
+package com.liuyansh.entity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "activity_daily_rollups")
+public class ActivityDailyRollup {
+    @Id
+    @Column(name = "activity_day")
+    private LocalDate day; // UTC
+    private long messages;
+    private long replies;
+    private long likes; // Net of unlikes
+}
@@ -0,0 +1,27 @@
+package com.liuyansh.entity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+import java.util.UUID;
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "activity_events")
+public class ActivityEvent {
+    public enum Kind { MESSAGE, REPLY, LIKE, UNLIKE }
+    // A pooled sequence (unlike IDENTITY) lets Hibernate batch event inserts; ids only order events per node.
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "activity_events_seq")
+    @SequenceGenerator(name = "activity_events_seq", sequenceName = "activity_events_seq", allocationSize = 50)
+    private Long id;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    private Kind kind;
+    @Column(nullable = false)
+    private UUID messageId; // The thread the activity belongs to, also for replies and reply likes
+    @Column(nullable = false)
+    private Instant ts;
+}
@@ -0,0 +1,28 @@
+package com.liuyansh.entity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.UUID;
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "activity_message_rollups")
+public class ActivityMessageRollup {
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Embeddable
+    public static class Key implements Serializable {
+        @Column(name = "activity_day")
+        private LocalDate day; // UTC
+        private UUID messageId;
+    }
+    @EmbeddedId
+    private Key key;
+    private long replies;
+    private long likes; // Net of unlikes
+}
@@ -0,0 +1,18 @@
+package com.liuyansh.entity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "digest_checkpoints")
+public class DigestCheckpoint {
+    @Id
+    private String name;
+    private long lastEventId;
+    private Instant watermark; // Every event with an earlier ts has been folded into the rollups
+    private Instant updatedAt;
+}
@@ -0,0 +1,32 @@
+package com.liuyansh.entity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+import java.util.UUID;
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "email_dispatches", indexes = @Index(name = "idx_email_dispatches_status_next", columnList = "status, next_attempt_at"))
+public class EmailDispatch {
+    public enum Status { PENDING, RUNNING, SENT, SKIPPED, FAILED }
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    @Column(unique = true, nullable = false)
+    private String idempotencyKey;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    private Status status;
+    private int attempts;
+    private long sentCount;
+    private Instant windowEnd;
+    private Instant nextAttemptAt;
+    private Instant lockedUntil;
+    @Column(length = 1024)
+    private String lastError;
+    private Instant createdAt;
+    private Instant updatedAt;
+}
@@ -0,0 +1,24 @@
+package com.liuyansh.entity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "email_send_logs", indexes = @Index(name = "idx_email_send_logs_ts", columnList = "ts"))
+public class EmailSendLog {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private Instant ts;
+    private long messageCount;
+    private long replyCount;
+    private long likeCount;
+    @Column(length = 16, nullable = false)
+    private String status; // "success" or "failure", as the frontend expects
+    @Column(length = 512)
+    private String responseSnippet;
+}
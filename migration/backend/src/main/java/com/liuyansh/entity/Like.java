@@ -13,6 +13,10 @@ import java.util.UUID;
 @Table(name = "likes", uniqueConstraints = {
     @UniqueConstraint(columnNames = {"user_id", "message_id"}),
     @UniqueConstraint(columnNames = {"user_id", "reply_id"})
+}, indexes = {
+    @Index(name = "idx_likes_message", columnList = "message_id"),
+    @Index(name = "idx_likes_reply", columnList = "reply_id"),
+    @Index(name = "idx_likes_ts", columnList = "ts")
 })
 public class Like {
     @Id
@@ -10,7 +10,7 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = @Index(name = "idx_messages_ts_id", columnList = "ts DESC, id DESC"))
 public class Message {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -21,6 +21,7 @@ public class Message {
     private String text;
     private Instant ts;
     private int likes;
+    private int replyCount; // Denormalized so feed rows need no reply aggregate
     @OneToMany(mappedBy = "message", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @OrderBy("ts ASC")
     private List<Reply> replies;
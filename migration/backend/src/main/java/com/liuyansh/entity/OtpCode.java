@@ -0,0 +1,19 @@
+package com.liuyansh.entity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "otp_codes")
+public class OtpCode {
+    @Id
+    private String phone;
+    @Column(nullable = false)
+    private String code;
+    private Instant expiresAt;
+    private int attempts;
+}
@@ -0,0 +1,20 @@
+package com.liuyansh.entity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "rate_limit_hits", indexes = @Index(name = "idx_rate_limit_hits_key_ts", columnList = "limit_key, ts"))
+public class RateLimitHit {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(name = "limit_key", nullable = false)
+    private String key;
+    private Instant ts;
+    private Instant expiresAt;
+}
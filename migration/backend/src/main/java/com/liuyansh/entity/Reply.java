@@ -7,11 +7,16 @@ import lombok.NoArgsConstructor;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "replies")
+@Table(name = "replies", indexes = {
+    @Index(name = "idx_replies_message_path", columnList = "message_id, path"),
+    @Index(name = "idx_replies_parent", columnList = "parent_reply_id"),
+    @Index(name = "idx_replies_ts", columnList = "ts")
+})
 public class Reply {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -30,9 +35,29 @@ public class Reply {
     @JoinColumn(name = "parent_reply_id")
     @JsonIgnore
     private Reply parentReply;
+    // Materialized path: the parent's path plus one fixed-width segment, so sorting by path yields depth-first display order.
+    @Column(length = PATH_MAX_LENGTH, nullable = false)
+    @JsonIgnore
+    private String path;
+    private int depth; // 1 for replies to the message itself
     @OneToMany(mappedBy = "parentReply", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @OrderBy("ts ASC")
     private List<Reply> replies;
     @OneToMany(mappedBy = "reply", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Like> likeList;
-}
\ No newline at end of file
+    public static final int PATH_SEGMENT_LENGTH = 20;
+    public static final int PATH_MAX_LENGTH = 512; // replies.path column; fits PATH_MAX_LENGTH / PATH_SEGMENT_LENGTH levels
+    // 12 hex digits of epoch millis keep siblings in time order; 8 more break ties between replies in the same millisecond.
+    public static String pathSegment(Instant ts, int salt) {
+        return String.format("%012x%08x", ts.toEpochMilli(), salt);
+    }
+    // Exclusive upper bound of the paths under a reply. Segments are lowercase hex, so 'g' sorts after every descendant, and
+    // [path, path + "g") is a plain range on the index where LIKE 'path%' can only use it under the C collation.
+    public static String subtreeUpperBound(String path) {
+        return path + "g";
+    }
+    public static String childPath(Reply parent, Instant ts) {
+        String segment = pathSegment(ts, ThreadLocalRandom.current().nextInt());
+        return parent == null ? segment : parent.getPath() + segment;
+    }
+}
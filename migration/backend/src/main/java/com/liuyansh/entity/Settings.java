@@ -19,6 +19,7 @@ public class Settings {
     private String apiKey;
     private String timezone;
     private Instant lastSentTs;
-    @Column(columnDefinition = "TEXT")
-    private String sendLogs; // Storing as JSON string for simplicity
+    @Version
+    @Column(nullable = false)
+    private Long version; // Guards lastSentTs when several nodes finish digests concurrently
 }
\ No newline at end of file
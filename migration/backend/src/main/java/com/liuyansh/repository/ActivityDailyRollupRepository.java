@@ -0,0 +1,14 @@
+package com.liuyansh.repository;
+import com.liuyansh.dto.ActivityTotals;
+import com.liuyansh.entity.ActivityDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
+@Repository
+public interface ActivityDailyRollupRepository extends JpaRepository<ActivityDailyRollup, LocalDate> {
+    @Query("SELECT new com.liuyansh.dto.ActivityTotals(COALESCE(SUM(r.messages), 0L), COALESCE(SUM(r.replies), 0L), COALESCE(SUM(r.likes), 0L)) " +
+           "FROM ActivityDailyRollup r WHERE r.day >= :from AND r.day < :to")
+    ActivityTotals sumBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
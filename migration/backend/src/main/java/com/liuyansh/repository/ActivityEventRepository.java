@@ -0,0 +1,19 @@
+package com.liuyansh.repository;
+import com.liuyansh.entity.ActivityEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+@Repository
+public interface ActivityEventRepository extends JpaRepository<ActivityEvent, Long> {
+    @Query("SELECT e FROM ActivityEvent e WHERE e.ts < :cutoff ORDER BY e.id ASC")
+    List<ActivityEvent> findBatchBefore(@Param("cutoff") Instant cutoff, Pageable pageable);
+    @Modifying
+    @Query("DELETE FROM ActivityEvent e WHERE e.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
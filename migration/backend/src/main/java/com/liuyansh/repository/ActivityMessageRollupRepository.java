@@ -0,0 +1,23 @@
+package com.liuyansh.repository;
+import com.liuyansh.entity.ActivityMessageRollup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+@Repository
+public interface ActivityMessageRollupRepository extends JpaRepository<ActivityMessageRollup, ActivityMessageRollup.Key> {
+    // Most engaged threads over [from, to): likes plus replies, newest activity first on ties.
+    @Query("SELECT r.key.messageId FROM ActivityMessageRollup r WHERE r.key.day >= :from AND r.key.day < :to " +
+           "GROUP BY r.key.messageId ORDER BY SUM(r.likes) + SUM(r.replies) DESC, MAX(r.key.day) DESC")
+    List<UUID> findTopMessageIds(@Param("from") LocalDate from, @Param("to") LocalDate to, Pageable pageable);
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ActivityMessageRollup r WHERE r.key.day < :before")
+    int deleteBefore(@Param("before") LocalDate before);
+}
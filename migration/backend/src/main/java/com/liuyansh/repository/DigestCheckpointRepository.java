@@ -0,0 +1,16 @@
+package com.liuyansh.repository;
+import com.liuyansh.entity.DigestCheckpoint;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.Optional;
+@Repository
+public interface DigestCheckpointRepository extends JpaRepository<DigestCheckpoint, String> {
+    // Row lock that serializes aggregation runs across nodes.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM DigestCheckpoint c WHERE c.name = :name")
+    Optional<DigestCheckpoint> findForUpdate(@Param("name") String name);
+}
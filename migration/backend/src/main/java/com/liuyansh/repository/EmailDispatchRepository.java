@@ -0,0 +1,28 @@
+package com.liuyansh.repository;
+import com.liuyansh.entity.EmailDispatch;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+@Repository
+public interface EmailDispatchRepository extends JpaRepository<EmailDispatch, UUID> {
+    Optional<EmailDispatch> findByIdempotencyKey(String idempotencyKey);
+    // Due work is either pending and past its backoff, or running under a lease whose worker died.
+    @Query("SELECT d.id FROM EmailDispatch d WHERE (d.status = com.liuyansh.entity.EmailDispatch.Status.PENDING AND d.nextAttemptAt <= :now) " +
+           "OR (d.status = com.liuyansh.entity.EmailDispatch.Status.RUNNING AND d.lockedUntil < :now) ORDER BY d.nextAttemptAt ASC")
+    List<UUID> findDueIds(@Param("now") Instant now, Pageable pageable);
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailDispatch d SET d.status = com.liuyansh.entity.EmailDispatch.Status.RUNNING, d.lockedUntil = :lockedUntil, " +
+           "d.attempts = d.attempts + 1, d.updatedAt = :now WHERE d.id = :id AND (" +
+           "(d.status = com.liuyansh.entity.EmailDispatch.Status.PENDING AND d.nextAttemptAt <= :now) " +
+           "OR (d.status = com.liuyansh.entity.EmailDispatch.Status.RUNNING AND d.lockedUntil < :now))")
+    int claim(@Param("id") UUID id, @Param("now") Instant now, @Param("lockedUntil") Instant lockedUntil);
+}
@@ -0,0 +1,17 @@
+package com.liuyansh.repository;
+import com.liuyansh.entity.EmailSendLog;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+@Repository
+public interface EmailSendLogRepository extends JpaRepository<EmailSendLog, Long> {
+    @Query("SELECT l FROM EmailSendLog l ORDER BY l.id DESC")
+    List<EmailSendLog> findLatest(Pageable pageable);
+    @Modifying
+    @Query("DELETE FROM EmailSendLog l WHERE l.id < :id")
+    int deleteOlderThan(@Param("id") Long id);
+}
@@ -1,8 +1,11 @@
 package com.liuyansh.repository;
 import com.liuyansh.entity.Like;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -10,5 +13,14 @@ import java.util.UUID;
 public interface LikeRepository extends JpaRepository<Like, UUID> {
     Optional<Like> findByUserIdAndMessageId(String userId, UUID messageId);
     Optional<Like> findByUserIdAndReplyId(String userId, UUID replyId);
-    List<Like> findByTsAfter(Instant timestamp);
-}
\ No newline at end of file
+    @Modifying
+    @Query("DELETE FROM Like l WHERE l.userId = :userId AND l.message.id = :messageId")
+    int deleteMessageLike(@Param("userId") String userId, @Param("messageId") UUID messageId);
+    @Modifying
+    @Query("DELETE FROM Like l WHERE l.userId = :userId AND l.reply.id = :replyId")
+    int deleteReplyLike(@Param("userId") String userId, @Param("replyId") UUID replyId);
+    @Query("SELECT l.message.id FROM Like l WHERE l.userId = :userId AND l.message.id IN :messageIds")
+    List<UUID> findLikedMessageIds(@Param("userId") String userId, @Param("messageIds") Collection<UUID> messageIds);
+    @Query("SELECT l.reply.id FROM Like l WHERE l.userId = :userId AND l.reply.id IN :replyIds")
+    List<UUID> findLikedReplyIds(@Param("userId") String userId, @Param("replyIds") Collection<UUID> replyIds);
+}
@@ -1,14 +1,33 @@
 package com.liuyansh.repository;
+import com.liuyansh.dto.FeedRow;
 import com.liuyansh.entity.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 @Repository
 public interface MessageRepository extends JpaRepository<Message, UUID> {
-    List<Message> findByTsAfter(Instant timestamp);
-    @Query("SELECT m FROM Message m LEFT JOIN FETCH m.replies r WHERE r.parentReply IS NULL ORDER BY m.ts DESC")
-    List<Message> findAllWithRootReplies();
-}
\ No newline at end of file
+    // Feed rows are read as slim projections straight off idx_messages_ts_id; no entities are hydrated.
+    @Query("SELECT new com.liuyansh.dto.FeedRow(m.id, m.userId, m.phoneMasked, m.text, m.ts, m.likes, m.replyCount) " +
+           "FROM Message m ORDER BY m.ts DESC, m.id DESC")
+    List<FeedRow> findFeedPage(Pageable pageable);
+    @Query("SELECT new com.liuyansh.dto.FeedRow(m.id, m.userId, m.phoneMasked, m.text, m.ts, m.likes, m.replyCount) " +
+           "FROM Message m WHERE m.ts < :ts OR (m.ts = :ts AND m.id < :id) ORDER BY m.ts DESC, m.id DESC")
+    List<FeedRow> findFeedPageBefore(@Param("ts") Instant ts, @Param("id") UUID id, Pageable pageable);
+    @Query("SELECT m.id FROM Message m WHERE m.id IN :ids")
+    List<UUID> findExistingIds(@Param("ids") Collection<UUID> ids);
+    @Modifying
+    @Transactional
+    @Query("UPDATE Message m SET m.likes = m.likes + :delta WHERE m.id = :id")
+    int incrementLikes(@Param("id") UUID id, @Param("delta") int delta);
+    @Modifying
+    @Query("UPDATE Message m SET m.replyCount = m.replyCount + 1 WHERE m.id = :id")
+    int incrementReplyCount(@Param("id") UUID id);
+}
@@ -0,0 +1,22 @@
+package com.liuyansh.repository;
+import com.liuyansh.entity.OtpCode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Instant;
+@Repository
+public interface OtpCodeRepository extends JpaRepository<OtpCode, String> {
+    @Modifying
+    @Query("UPDATE OtpCode o SET o.attempts = o.attempts + 1 WHERE o.phone = :phone AND o.expiresAt > :now AND o.attempts < :maxAttempts")
+    int recordAttempt(@Param("phone") String phone, @Param("now") Instant now, @Param("maxAttempts") int maxAttempts);
+    @Modifying
+    @Query("DELETE FROM OtpCode o WHERE o.phone = :phone AND o.code = :code")
+    int deleteByPhoneAndCode(@Param("phone") String phone, @Param("code") String code);
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OtpCode o WHERE o.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
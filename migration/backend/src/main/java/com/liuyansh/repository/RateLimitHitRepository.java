@@ -0,0 +1,20 @@
+package com.liuyansh.repository;
+import com.liuyansh.entity.RateLimitHit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Instant;
+@Repository
+public interface RateLimitHitRepository extends JpaRepository<RateLimitHit, Long> {
+    @Query("SELECT COUNT(h) FROM RateLimitHit h WHERE h.key = :key AND h.ts > :since")
+    long countSince(@Param("key") String key, @Param("since") Instant since);
+    @Query("SELECT MIN(h.ts) FROM RateLimitHit h WHERE h.key = :key AND h.ts > :since")
+    Instant findOldestSince(@Param("key") String key, @Param("since") Instant since);
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RateLimitHit h WHERE h.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -1,11 +1,40 @@
 package com.liuyansh.repository;
+import com.liuyansh.dto.ReplyRow;
 import com.liuyansh.entity.Reply;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import java.time.Instant;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 @Repository
 public interface ReplyRepository extends JpaRepository<Reply, UUID> {
-    List<Reply> findByTsAfter(Instant timestamp);
-}
\ No newline at end of file
+    // Ordered by path, every reply follows its parent and siblings follow each other in time: one range scan per message on idx_replies_message_path.
+    // Only the first rowsPerMessage rows of each thread are returned; a path-order prefix never contains a reply without its parent.
+    // Every path is >= '', but the bound makes the path index the better match than the message_id-only index H2 adds for the foreign key.
+    @Query("SELECT new com.liuyansh.dto.ReplyRow(t.id, t.messageId, t.parentReplyId, t.userId, t.phoneMasked, t.text, t.ts, t.likes, t.depth) FROM (" +
+           "SELECT r.id AS id, r.message.id AS messageId, r.parentReply.id AS parentReplyId, r.userId AS userId, r.phoneMasked AS phoneMasked, " +
+           "r.text AS text, r.ts AS ts, r.likes AS likes, r.depth AS depth, r.path AS path, " +
+           "ROW_NUMBER() OVER (PARTITION BY r.message.id ORDER BY r.path) AS rn " +
+           "FROM Reply r WHERE r.message.id IN :messageIds AND r.path >= '' AND r.depth <= :maxDepth) t " +
+           "WHERE t.rn <= :rowsPerMessage ORDER BY t.messageId, t.path")
+    List<ReplyRow> findRowsByMessageIds(@Param("messageIds") Collection<UUID> messageIds, @Param("maxDepth") int maxDepth,
+                                        @Param("rowsPerMessage") int rowsPerMessage);
+    @Query("SELECT new com.liuyansh.dto.ReplyRow(r.id, r.message.id, r.parentReply.id, r.userId, r.phoneMasked, r.text, r.ts, r.likes, r.depth) " +
+           "FROM Reply r WHERE r.message.id = :messageId AND r.path >= :path AND r.path < :pathEnd AND r.depth <= :maxDepth ORDER BY r.path")
+    List<ReplyRow> findSubtreeRows(@Param("messageId") UUID messageId, @Param("path") String path, @Param("pathEnd") String pathEnd,
+                                   @Param("maxDepth") int maxDepth);
+    @Query("SELECT r.message.id FROM Reply r WHERE r.id = :id")
+    Optional<UUID> findMessageIdById(@Param("id") UUID id);
+    // Rows of [replyId, messageId] for the replies that exist.
+    @Query("SELECT r.id, r.message.id FROM Reply r WHERE r.id IN :ids")
+    List<Object[]> findMessageIdsByIds(@Param("ids") Collection<UUID> ids);
+    @Modifying
+    @Transactional
+    @Query("UPDATE Reply r SET r.likes = r.likes + :delta WHERE r.id = :id")
+    int incrementLikes(@Param("id") UUID id, @Param("delta") int delta);
+}
@@ -0,0 +1,132 @@
+package com.liuyansh.service;
+import com.liuyansh.entity.ActivityDailyRollup;
+import com.liuyansh.entity.ActivityEvent;
+import com.liuyansh.entity.ActivityMessageRollup;
+import com.liuyansh.entity.DigestCheckpoint;
+import com.liuyansh.repository.ActivityDailyRollupRepository;
+import com.liuyansh.repository.ActivityEventRepository;
+import com.liuyansh.repository.ActivityMessageRollupRepository;
+import com.liuyansh.repository.DigestCheckpointRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+@Component
+public class ActivityAggregator {
+    public static final String CHECKPOINT = "digest";
+    private record BatchResult(int consumed, Instant watermark) {}
+    private static final Logger logger = LoggerFactory.getLogger(ActivityAggregator.class);
+    private final ActivityEventRepository eventRepository;
+    private final ActivityDailyRollupRepository dailyRollupRepository;
+    private final ActivityMessageRollupRepository messageRollupRepository;
+    private final DigestCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter consumedEvents;
+    private final int batchSize;
+    private final Duration commitGrace;
+    private final Duration rollupRetention;
+    public ActivityAggregator(ActivityEventRepository eventRepository, ActivityDailyRollupRepository dailyRollupRepository,
+                              ActivityMessageRollupRepository messageRollupRepository, DigestCheckpointRepository checkpointRepository,
+                              PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                              @Value("${liuyan.digest.aggregate.batch-size:1000}") int batchSize,
+                              @Value("${liuyan.digest.aggregate.commit-grace:30s}") Duration commitGrace,
+                              @Value("${liuyan.digest.rollup-retention:90d}") Duration rollupRetention) {
+        this.eventRepository = eventRepository;
+        this.dailyRollupRepository = dailyRollupRepository;
+        this.messageRollupRepository = messageRollupRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.consumedEvents = Counter.builder("digest.events.consumed").register(meterRegistry);
+        this.batchSize = batchSize;
+        this.commitGrace = commitGrace;
+        this.rollupRetention = rollupRetention;
+    }
+    public static LocalDate dayOf(Instant ts) {
+        return LocalDate.ofInstant(ts, ZoneOffset.UTC);
+    }
+    @Scheduled(fixedDelayString = "${liuyan.digest.aggregate.interval-ms:60000}")
+    public void aggregate() {
+        catchUp(Instant.now());
+        messageRollupRepository.deleteBefore(dayOf(Instant.now().minus(rollupRetention)));
+    }
+    // Folds every event older than the target into the rollups and returns the checkpoint's watermark afterwards.
+    // Events younger than the commit grace are left alone: a transaction that started earlier may still commit one of them.
+    public Instant catchUp(Instant target) {
+        Instant graceLimit = Instant.now().minus(commitGrace);
+        Instant cutoff = target.isBefore(graceLimit) ? target : graceLimit;
+        BatchResult result;
+        do {
+            result = transactionTemplate.execute(status -> consumeBatch(cutoff));
+        } while (result.consumed() == batchSize);
+        return result.watermark();
+    }
+    // The watermark as seen by the caller's transaction, which may be reading from a replica.
+    public Instant visibleWatermark() {
+        return checkpointRepository.findById(CHECKPOINT).map(DigestCheckpoint::getWatermark).orElse(null);
+    }
+    private BatchResult consumeBatch(Instant cutoff) {
+        // Rollup updates, the delete of the consumed events and the checkpoint move commit together,
+        // so a crash midway leaves the events in place and the next run picks them up exactly once.
+        DigestCheckpoint checkpoint = checkpointRepository.findForUpdate(CHECKPOINT)
+                .orElseThrow(() -> new IllegalStateException("Missing digest checkpoint row"));
+        List<ActivityEvent> events = eventRepository.findBatchBefore(cutoff, PageRequest.of(0, batchSize));
+        if (!events.isEmpty()) {
+            Map<LocalDate, ActivityDailyRollup> daily = load(events.stream().map(e -> dayOf(e.getTs())).distinct().toList(),
+                    dailyRollupRepository::findAllById, ActivityDailyRollup::getDay, day -> new ActivityDailyRollup(day, 0, 0, 0));
+            Map<ActivityMessageRollup.Key, ActivityMessageRollup> perMessage = load(
+                    events.stream().map(e -> new ActivityMessageRollup.Key(dayOf(e.getTs()), e.getMessageId())).distinct().toList(),
+                    messageRollupRepository::findAllById, ActivityMessageRollup::getKey, key -> new ActivityMessageRollup(key, 0, 0));
+            long lastEventId = checkpoint.getLastEventId();
+            for (ActivityEvent event : events) {
+                LocalDate day = dayOf(event.getTs());
+                ActivityDailyRollup dayRollup = daily.get(day);
+                ActivityMessageRollup messageRollup = perMessage.get(new ActivityMessageRollup.Key(day, event.getMessageId()));
+                switch (event.getKind()) {
+                    case MESSAGE -> dayRollup.setMessages(dayRollup.getMessages() + 1);
+                    case REPLY -> {
+                        dayRollup.setReplies(dayRollup.getReplies() + 1);
+                        messageRollup.setReplies(messageRollup.getReplies() + 1);
+                    }
+                    case LIKE, UNLIKE -> {
+                        int delta = event.getKind() == ActivityEvent.Kind.LIKE ? 1 : -1;
+                        dayRollup.setLikes(dayRollup.getLikes() + delta);
+                        messageRollup.setLikes(messageRollup.getLikes() + delta);
+                    }
+                }
+                lastEventId = Math.max(lastEventId, event.getId());
+            }
+            dailyRollupRepository.saveAll(daily.values());
+            messageRollupRepository.saveAll(perMessage.values());
+            eventRepository.deleteByIds(events.stream().map(ActivityEvent::getId).toList());
+            checkpoint.setLastEventId(lastEventId);
+            consumedEvents.increment(events.size());
+            logger.debug("Aggregated {} activity events up to id {}", events.size(), lastEventId);
+        }
+        // The watermark only moves once everything before the cutoff has been consumed.
+        if (events.size() < batchSize && (checkpoint.getWatermark() == null || cutoff.isAfter(checkpoint.getWatermark()))) {
+            checkpoint.setWatermark(cutoff);
+        }
+        checkpoint.setUpdatedAt(Instant.now());
+        return new BatchResult(events.size(), checkpoint.getWatermark());
+    }
+    private static <K, V> Map<K, V> load(List<K> keys, Function<List<K>, List<V>> finder, Function<V, K> keyOf, Function<K, V> creator) {
+        Map<K, V> rows = new HashMap<>();
+        for (V row : finder.apply(keys)) rows.put(keyOf.apply(row), row);
+        for (K key : keys) rows.computeIfAbsent(key, creator);
+        return rows;
+    }
+}
@@ -1,49 +1,141 @@
 package com.liuyansh.service;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.liuyansh.dto.AuthPrincipal;
+import com.liuyansh.dto.OtpRequest;
 import com.liuyansh.entity.AuthUser;
 import com.liuyansh.repository.AuthUserRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Base64;
 import java.util.Date;
-import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 @Service
 public class AuthService {
     private final AuthUserRepository authUserRepository;
     private final SecretKey jwtKey;
-    private static final Map<String, String> otpStore = new ConcurrentHashMap<>();
-    private static final Map<String, Long> rateLimitStore = new ConcurrentHashMap<>();
-    public AuthService(AuthUserRepository authUserRepository, @Value("${jwt.secret}") String secret) {
+    private final JwtParser jwtParser;
+    // Verified token -> principal, keyed by SHA-256 of the token so raw tokens are never retained.
+    private final Cache<String, VerifiedToken> tokenCache;
+    private final OtpStore otpStore;
+    private final RateLimiter rateLimiter;
+    private final Duration otpTtl;
+    private final int phoneLimit;
+    private final Duration phoneWindow;
+    private final int ipLimit;
+    private final Duration ipWindow;
+    private final MeterRegistry meterRegistry;
+    private record VerifiedToken(AuthPrincipal principal, Instant expiresAt) {}
+    public AuthService(AuthUserRepository authUserRepository, @Value("${jwt.secret}") String secret,
+                       OtpStore otpStore, RateLimiter rateLimiter,
+                       @Value("${liuyan.auth.otp.ttl:5m}") Duration otpTtl,
+                       @Value("${liuyan.auth.rate-limit.phone.limit:1}") int phoneLimit,
+                       @Value("${liuyan.auth.rate-limit.phone.window:60s}") Duration phoneWindow,
+                       @Value("${liuyan.auth.rate-limit.ip.limit:20}") int ipLimit,
+                       @Value("${liuyan.auth.rate-limit.ip.window:10m}") Duration ipWindow,
+                       @Value("${liuyan.auth.token-cache.enabled:true}") boolean tokenCacheEnabled,
+                       @Value("${liuyan.auth.token-cache.max-size:10000}") long tokenCacheMaxSize,
+                       @Value("${liuyan.auth.token-cache.ttl:5m}") Duration tokenCacheTtl,
+                       MeterRegistry meterRegistry) {
         this.authUserRepository = authUserRepository;
+        this.otpStore = otpStore;
+        this.rateLimiter = rateLimiter;
+        this.otpTtl = otpTtl;
+        this.phoneLimit = phoneLimit;
+        this.phoneWindow = phoneWindow;
+        this.ipLimit = ipLimit;
+        this.ipWindow = ipWindow;
+        this.meterRegistry = meterRegistry;
         this.jwtKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.jwtParser = Jwts.parser().verifyWith(jwtKey).build();
+        if (tokenCacheEnabled) {
+            this.tokenCache = Caffeine.newBuilder().maximumSize(tokenCacheMaxSize).expireAfterWrite(tokenCacheTtl).recordStats().build();
+            CaffeineCacheMetrics.monitor(meterRegistry, tokenCache, "auth-tokens");
+        } else {
+            this.tokenCache = null;
+        }
     }
-    public Optional<String> requestOtp(String phone) {
-        long now = System.currentTimeMillis();
-        if (rateLimitStore.getOrDefault(phone, 0L) > now - 60000) {
-            return Optional.empty(); // Rate limited
+    public OtpRequest requestOtp(String phone, String clientIp) {
+        // The per-IP window is checked first so a flood of distinct phone numbers stops before it creates per-phone state.
+        Duration wait = rateLimiter.tryAcquire("ip:" + clientIp, ipLimit, ipWindow);
+        if (!wait.isZero()) {
+            otpRequests("rejected_ip").increment();
+            return new OtpRequest(null, wait);
+        }
+        wait = rateLimiter.tryAcquire("phone:" + phone, phoneLimit, phoneWindow);
+        if (!wait.isZero()) {
+            otpRequests("rejected_phone").increment();
+            return new OtpRequest(null, wait);
         }
         String code = String.valueOf(ThreadLocalRandom.current().nextInt(100000, 1000000));
-        otpStore.put(phone, code);
-        rateLimitStore.put(phone, now);
-        return Optional.of(code);
+        otpStore.save(phone, code, otpTtl);
+        otpRequests("issued").increment();
+        return new OtpRequest(code, Duration.ZERO);
     }
     public Optional<String> verifyOtpAndLogin(String phone, String code) {
-        if (code == null || !code.equals(otpStore.get(phone))) {
+        if (phone == null || !otpStore.verifyAndConsume(phone, code)) {
+            Counter.builder("auth.otp.verifications").tag("outcome", "rejected").register(meterRegistry).increment();
             return Optional.empty();
         }
-        otpStore.remove(phone);
+        Counter.builder("auth.otp.verifications").tag("outcome", "accepted").register(meterRegistry).increment();
         AuthUser user = authUserRepository.findByPhone(phone)
                 .orElseGet(() -> authUserRepository.save(new AuthUser(null, phone)));
         return Optional.of(generateToken(user));
     }
-    private String generateToken(AuthUser user) {
+    private Counter otpRequests(String outcome) {
+        return Counter.builder("auth.otp.requests").tag("outcome", outcome).register(meterRegistry);
+    }
+    public Optional<AuthPrincipal> authenticate(String token) {
+        if (tokenCache == null) return verify(token).map(VerifiedToken::principal);
+        String key = hash(token);
+        VerifiedToken cached = tokenCache.getIfPresent(key);
+        if (cached != null) {
+            if (cached.expiresAt().isAfter(Instant.now())) return Optional.of(cached.principal());
+            tokenCache.invalidate(key);
+            return Optional.empty();
+        }
+        Optional<VerifiedToken> verified = verify(token);
+        verified.ifPresent(v -> tokenCache.put(key, v));
+        return verified.map(VerifiedToken::principal);
+    }
+    private Optional<VerifiedToken> verify(String token) {
+        try {
+            Claims claims = jwtParser.parseSignedClaims(token).getPayload();
+            AuthPrincipal principal = new AuthPrincipal(claims.getSubject(), maskPhone(claims.get("phone", String.class)));
+            return Optional.of(new VerifiedToken(principal, claims.getExpiration().toInstant()));
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    static String maskPhone(String phone) {
+        if (phone == null || phone.length() < 7) return "****";
+        return phone.substring(0, 3) + "****" + phone.substring(phone.length() - 4);
+    }
+    public String generateToken(AuthUser user) {
         Instant now = Instant.now();
         return Jwts.builder()
                 .subject(user.getId().toString())
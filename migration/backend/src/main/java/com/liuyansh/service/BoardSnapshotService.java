@@ -0,0 +1,218 @@
+package com.liuyansh.service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+@Service
+public class BoardSnapshotService {
+    public record SnapshotStats(long messages, long replies, long likes, long bytes) {}
+    private interface RowEncoder {
+        void encode(ResultSet rs, ByteBuffer out) throws SQLException;
+    }
+    private interface RowDecoder {
+        void decode(SnapshotReader in, PreparedStatement insert) throws SQLException;
+    }
+    private static final Logger logger = LoggerFactory.getLogger(BoardSnapshotService.class);
+    // Replies are exported in (message, path) order so every parent is inserted before its children on restore.
+    private static final String SELECT_MESSAGES = "SELECT id, user_id, phone_masked, text, ts, likes, reply_count FROM messages";
+    private static final String SELECT_REPLIES = "SELECT id, message_id, parent_reply_id, user_id, phone_masked, text, ts, likes, path, depth FROM replies ORDER BY message_id, path";
+    private static final String SELECT_LIKES = "SELECT id, user_id, ts, message_id, reply_id FROM likes";
+    private static final String INSERT_MESSAGE = "INSERT INTO messages (id, user_id, phone_masked, text, ts, likes, reply_count) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_REPLY = "INSERT INTO replies (id, message_id, parent_reply_id, user_id, phone_masked, text, ts, likes, path, depth) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_LIKE = "INSERT INTO likes (id, user_id, ts, message_id, reply_id) VALUES (?, ?, ?, ?, ?)";
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate exportTransaction;
+    private final TransactionTemplate importTransaction;
+    private final LikeCounterBuffer likeCounterBuffer;
+    private final FeedCache feedCache;
+    private final SearchService searchService;
+    private final HotMessageService hotMessageService;
+    private final int blockSize;
+    private final int batchSize;
+    public BoardSnapshotService(DataSource dataSource, PlatformTransactionManager transactionManager, LikeCounterBuffer likeCounterBuffer,
+                                FeedCache feedCache, SearchService searchService, HotMessageService hotMessageService,
+                                @Value("${liuyan.snapshot.block-size:1048576}") int blockSize,
+                                @Value("${liuyan.snapshot.batch-size:1000}") int batchSize) {
+        // Checked here so a misconfigured block size fails startup rather than the first export.
+        if (blockSize < SnapshotWriter.MAX_ROW_BYTES) {
+            throw new IllegalArgumentException("liuyan.snapshot.block-size must be at least " + SnapshotWriter.MAX_ROW_BYTES + " bytes, was " + blockSize);
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // Rows stream off a server-side cursor instead of being buffered by the driver.
+        this.jdbcTemplate.setFetchSize(batchSize);
+        this.exportTransaction = new TransactionTemplate(transactionManager);
+        this.exportTransaction.setReadOnly(true);
+        // One consistent view across the three tables, so no like points at a reply the export never saw.
+        this.exportTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.importTransaction = new TransactionTemplate(transactionManager);
+        this.likeCounterBuffer = likeCounterBuffer;
+        this.feedCache = feedCache;
+        this.searchService = searchService;
+        this.hotMessageService = hotMessageService;
+        this.blockSize = blockSize;
+        this.batchSize = batchSize;
+    }
+    public SnapshotStats export(Path target) {
+        likeCounterBuffer.flush();
+        return exportTransaction.execute(status -> {
+            try (SnapshotWriter out = new SnapshotWriter(target, blockSize)) {
+                long messages = dump(out, SnapshotSection.MESSAGES, SELECT_MESSAGES, (rs, row) -> {
+                    SnapshotWriter.putUuid(row, rs.getObject(1, UUID.class));
+                    SnapshotWriter.putString(row, rs.getString(2));
+                    SnapshotWriter.putString(row, rs.getString(3));
+                    SnapshotWriter.putString(row, rs.getString(4));
+                    SnapshotWriter.putInstant(row, instant(rs, 5));
+                    row.putInt(rs.getInt(6));
+                    row.putInt(rs.getInt(7));
+                });
+                long replies = dump(out, SnapshotSection.REPLIES, SELECT_REPLIES, (rs, row) -> {
+                    SnapshotWriter.putUuid(row, rs.getObject(1, UUID.class));
+                    SnapshotWriter.putUuid(row, rs.getObject(2, UUID.class));
+                    SnapshotWriter.putNullableUuid(row, rs.getObject(3, UUID.class));
+                    SnapshotWriter.putString(row, rs.getString(4));
+                    SnapshotWriter.putString(row, rs.getString(5));
+                    SnapshotWriter.putString(row, rs.getString(6));
+                    SnapshotWriter.putInstant(row, instant(rs, 7));
+                    row.putInt(rs.getInt(8));
+                    SnapshotWriter.putString(row, rs.getString(9));
+                    row.putInt(rs.getInt(10));
+                });
+                long likes = dump(out, SnapshotSection.LIKES, SELECT_LIKES, (rs, row) -> {
+                    SnapshotWriter.putUuid(row, rs.getObject(1, UUID.class));
+                    SnapshotWriter.putString(row, rs.getString(2));
+                    SnapshotWriter.putInstant(row, instant(rs, 3));
+                    SnapshotWriter.putNullableUuid(row, rs.getObject(4, UUID.class));
+                    SnapshotWriter.putNullableUuid(row, rs.getObject(5, UUID.class));
+                });
+                SnapshotStats stats = new SnapshotStats(messages, replies, likes, out.size());
+                logger.info("Exported board snapshot to {}: {}", target, stats);
+                return stats;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+    // With replace, the current board is cleared first; otherwise rows are added and key conflicts abort the whole import.
+    public SnapshotStats importSnapshot(Path source, boolean replace) {
+        likeCounterBuffer.flush();
+        SnapshotStats stats = importTransaction.execute(status -> {
+            if (replace) {
+                jdbcTemplate.update("DELETE FROM likes");
+                // Detach the self-references first so the delete does not depend on row order.
+                jdbcTemplate.update("UPDATE replies SET parent_reply_id = NULL");
+                jdbcTemplate.update("DELETE FROM replies");
+                jdbcTemplate.update("DELETE FROM messages");
+            }
+            try (SnapshotReader in = new SnapshotReader(source)) {
+                long messages = 0, replies = 0, likes = 0;
+                for (SnapshotSection section = in.nextSection(); section != SnapshotSection.END; section = in.nextSection()) {
+                    switch (section) {
+                        case MESSAGES -> messages += load(in, INSERT_MESSAGE, (row, insert) -> {
+                            insert.setObject(1, row.getUuid());
+                            insert.setString(2, row.getString());
+                            insert.setString(3, row.getString());
+                            insert.setString(4, row.getString());
+                            insert.setObject(5, timestamp(row.getInstant()));
+                            insert.setInt(6, row.getInt());
+                            insert.setInt(7, row.getInt());
+                        });
+                        case REPLIES -> replies += load(in, INSERT_REPLY, (row, insert) -> {
+                            insert.setObject(1, row.getUuid());
+                            insert.setObject(2, row.getUuid());
+                            insert.setObject(3, row.getNullableUuid());
+                            insert.setString(4, row.getString());
+                            insert.setString(5, row.getString());
+                            insert.setString(6, row.getString());
+                            insert.setObject(7, timestamp(row.getInstant()));
+                            insert.setInt(8, row.getInt());
+                            insert.setString(9, row.getString());
+                            insert.setInt(10, row.getInt());
+                        });
+                        case LIKES -> likes += load(in, INSERT_LIKE, (row, insert) -> {
+                            insert.setObject(1, row.getUuid());
+                            insert.setString(2, row.getString());
+                            insert.setObject(3, timestamp(row.getInstant()));
+                            insert.setObject(4, row.getNullableUuid());
+                            insert.setObject(5, row.getNullableUuid());
+                        });
+                        default -> throw new IllegalStateException("Unexpected section " + section);
+                    }
+                }
+                return new SnapshotStats(messages, replies, likes, source.toFile().length());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        feedCache.invalidateAll();
+        searchService.rebuild();
+        hotMessageService.rebuild();
+        logger.info("Imported board snapshot from {}: {}", source, stats);
+        return stats;
+    }
+    private long dump(SnapshotWriter out, SnapshotSection section, String sql, RowEncoder encoder) throws IOException {
+        out.beginSection(section);
+        long[] rows = {0};
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            try {
+                ByteBuffer row = out.startRow();
+                while (true) {
+                    try {
+                        encoder.encode(rs, row);
+                        break;
+                    } catch (BufferOverflowException e) {
+                        row = out.growRow();
+                    }
+                }
+                out.endRow();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows[0]++;
+        });
+        out.endSection();
+        return rows[0];
+    }
+    private long load(SnapshotReader in, String sql, RowDecoder decoder) {
+        // Rows are decoded straight from the inflated block into JDBC batches; nothing accumulates beyond one batch.
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            long rows = 0;
+            try (PreparedStatement insert = connection.prepareStatement(sql)) {
+                while (in.nextRow()) {
+                    decoder.decode(in, insert);
+                    insert.addBatch();
+                    if (++rows % batchSize == 0) insert.executeBatch();
+                }
+                insert.executeBatch();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return rows;
+        });
+    }
+    private static Instant instant(ResultSet rs, int column) throws SQLException {
+        OffsetDateTime ts = rs.getObject(column, OffsetDateTime.class);
+        return ts == null ? null : ts.toInstant();
+    }
+    private static OffsetDateTime timestamp(Instant ts) {
+        return ts == null ? null : OffsetDateTime.ofInstant(ts, ZoneOffset.UTC);
+    }
+}
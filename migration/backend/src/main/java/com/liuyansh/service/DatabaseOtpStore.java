@@ -0,0 +1,37 @@
+package com.liuyansh.service;
+import com.liuyansh.entity.OtpCode;
+import com.liuyansh.repository.OtpCodeRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Duration;
+import java.time.Instant;
+@Component
+@ConditionalOnProperty(name = "liuyan.auth.store", havingValue = "database")
+public class DatabaseOtpStore implements OtpStore {
+    private final OtpCodeRepository otpCodeRepository;
+    private final int maxAttempts;
+    public DatabaseOtpStore(OtpCodeRepository otpCodeRepository, @Value("${liuyan.auth.otp.max-attempts:5}") int maxAttempts) {
+        this.otpCodeRepository = otpCodeRepository;
+        this.maxAttempts = maxAttempts;
+    }
+    @Override
+    @Transactional
+    public void save(String phone, String code, Duration ttl) {
+        otpCodeRepository.save(new OtpCode(phone, code, Instant.now().plus(ttl), 0));
+    }
+    @Override
+    @Transactional
+    public boolean verifyAndConsume(String phone, String code) {
+        if (code == null) return false;
+        // The conditional increment both counts the guess and rejects expired or exhausted codes, atomically across nodes.
+        if (otpCodeRepository.recordAttempt(phone, Instant.now(), maxAttempts) == 0) return false;
+        return otpCodeRepository.deleteByPhoneAndCode(phone, code) > 0;
+    }
+    @Scheduled(fixedDelayString = "${liuyan.auth.store.prune-interval-ms:60000}")
+    public void pruneExpired() {
+        otpCodeRepository.deleteExpired(Instant.now());
+    }
+}
@@ -0,0 +1,34 @@
+package com.liuyansh.service;
+import com.liuyansh.entity.RateLimitHit;
+import com.liuyansh.repository.RateLimitHitRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Duration;
+import java.time.Instant;
+@Component
+@ConditionalOnProperty(name = "liuyan.auth.store", havingValue = "database")
+public class DatabaseRateLimiter implements RateLimiter {
+    private final RateLimitHitRepository rateLimitHitRepository;
+    public DatabaseRateLimiter(RateLimitHitRepository rateLimitHitRepository) {
+        this.rateLimitHitRepository = rateLimitHitRepository;
+    }
+    @Override
+    @Transactional
+    public Duration tryAcquire(String key, int limit, Duration window) {
+        // Count-then-insert can admit a few extra hits when nodes race on one key; it never loses the window.
+        Instant now = Instant.now();
+        Instant since = now.minus(window);
+        if (rateLimitHitRepository.countSince(key, since) >= limit) {
+            Instant oldest = rateLimitHitRepository.findOldestSince(key, since);
+            return oldest == null ? window : Duration.between(now, oldest.plus(window));
+        }
+        rateLimitHitRepository.save(new RateLimitHit(null, key, now, now.plus(window)));
+        return Duration.ZERO;
+    }
+    @Scheduled(fixedDelayString = "${liuyan.auth.store.prune-interval-ms:60000}")
+    public void pruneExpired() {
+        rateLimitHitRepository.deleteExpired(Instant.now());
+    }
+}
@@ -0,0 +1,139 @@
+package com.liuyansh.service;
+import com.liuyansh.entity.EmailDispatch;
+import com.liuyansh.repository.EmailDispatchRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+@Service
+public class EmailDispatchService {
+    private static final Logger logger = LoggerFactory.getLogger(EmailDispatchService.class);
+    private final EmailDispatchRepository dispatchRepository;
+    private final EmailService emailService;
+    private final TaskExecutor executor;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    public EmailDispatchService(EmailDispatchRepository dispatchRepository, @Lazy EmailService emailService,
+                                @Value("${liuyan.email.dispatch.concurrency:2}") int concurrency,
+                                @Value("${liuyan.email.dispatch.max-attempts:6}") int maxAttempts,
+                                @Value("${liuyan.email.dispatch.base-backoff:30s}") Duration baseBackoff,
+                                @Value("${liuyan.email.dispatch.max-backoff:1h}") Duration maxBackoff,
+                                @Value("${liuyan.email.dispatch.lease:2m}") Duration lease,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.dispatchRepository = dispatchRepository;
+        this.emailService = emailService;
+        this.concurrency = concurrency;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        this.lease = lease;
+        // poll() never claims more than `concurrency` rows, so on virtual threads no pool is needed to bound the work.
+        this.executor = virtualThreads ? new VirtualThreadTaskExecutor("email-dispatch-") : newPlatformExecutor(concurrency);
+    }
+    private static ThreadPoolTaskExecutor newPlatformExecutor(int concurrency) {
+        // Sized to the claim budget in poll(), so claimed work never waits in a queue while its lease runs down.
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setThreadNamePrefix("email-dispatch-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ThreadPoolTaskExecutor pool) pool.shutdown();
+    }
+    public EmailDispatch enqueueWeeklyDigest(String idempotencyKey) {
+        Optional<EmailDispatch> existing = dispatchRepository.findByIdempotencyKey(idempotencyKey);
+        if (existing.isPresent()) return existing.get();
+        Instant now = Instant.now();
+        try {
+            return dispatchRepository.saveAndFlush(new EmailDispatch(null, idempotencyKey, EmailDispatch.Status.PENDING, 0, 0, now, now, null, null, now, now));
+        } catch (DataIntegrityViolationException e) {
+            // Another caller enqueued the same key concurrently; theirs wins.
+            return dispatchRepository.findByIdempotencyKey(idempotencyKey).orElseThrow(() -> e);
+        }
+    }
+    public Optional<EmailDispatch> find(UUID id) {
+        return dispatchRepository.findById(id);
+    }
+    @Scheduled(fixedDelayString = "${liuyan.email.dispatch.poll-interval-ms:5000}")
+    public void poll() {
+        int free = concurrency - inFlight.get();
+        if (free <= 0) return;
+        Instant now = Instant.now();
+        List<UUID> due = dispatchRepository.findDueIds(now, PageRequest.of(0, free));
+        for (UUID id : due) {
+            // The conditional update is the lease: only one poller, on any node, wins a given row.
+            if (dispatchRepository.claim(id, now, now.plus(lease)) == 0) continue;
+            inFlight.incrementAndGet();
+            executor.execute(() -> {
+                try {
+                    run(id);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+    }
+    private void run(UUID id) {
+        EmailDispatch dispatch = dispatchRepository.findById(id).orElseThrow();
+        try {
+            EmailService.DigestResult result = emailService.sendWeeklyDigest(dispatch.getWindowEnd(), dispatch.getIdempotencyKey());
+            dispatch.setStatus(result.sent() ? EmailDispatch.Status.SENT : EmailDispatch.Status.SKIPPED);
+            dispatch.setSentCount(result.messageCount());
+            dispatch.setLastError(null);
+        } catch (RuntimeException e) {
+            logger.warn("Email dispatch {} attempt {} failed", id, dispatch.getAttempts(), e);
+            dispatch.setLastError(truncate(String.valueOf(e.getMessage())));
+            if (dispatch.getAttempts() >= maxAttempts || !isRetryable(e)) {
+                dispatch.setStatus(EmailDispatch.Status.FAILED);
+            } else {
+                dispatch.setStatus(EmailDispatch.Status.PENDING);
+                dispatch.setNextAttemptAt(Instant.now().plus(backoff(dispatch.getAttempts())));
+            }
+        }
+        dispatch.setLockedUntil(null);
+        dispatch.setUpdatedAt(Instant.now());
+        dispatchRepository.save(dispatch);
+    }
+    private Duration backoff(int attempts) {
+        Duration delay = baseBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        if (delay.compareTo(maxBackoff) > 0) delay = maxBackoff;
+        // Up to 20% jitter so retries from a provider outage do not arrive in lockstep.
+        return delay.plusMillis(ThreadLocalRandom.current().nextLong(delay.toMillis() / 5 + 1));
+    }
+    private static boolean isRetryable(RuntimeException e) {
+        if (e instanceof HttpClientErrorException clientError) {
+            return clientError.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)
+                    || clientError.getStatusCode().isSameCodeAs(HttpStatus.REQUEST_TIMEOUT);
+        }
+        return true;
+    }
+    private static String truncate(String message) {
+        return message.length() <= 1024 ? message : message.substring(0, 1024);
+    }
+}
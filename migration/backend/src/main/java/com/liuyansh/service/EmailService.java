@@ -1,68 +1,244 @@
 package com.liuyansh.service;
-import com.liuyansh.entity.Like;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.liuyansh.dto.ActivityTotals;
+import com.liuyansh.entity.EmailSendLog;
 import com.liuyansh.entity.Message;
-import com.liuyansh.entity.Reply;
 import com.liuyansh.entity.Settings;
-import com.liuyansh.repository.LikeRepository;
+import com.liuyansh.repository.ActivityDailyRollupRepository;
+import com.liuyansh.repository.ActivityMessageRollupRepository;
+import com.liuyansh.repository.EmailSendLogRepository;
 import com.liuyansh.repository.MessageRepository;
-import com.liuyansh.repository.ReplyRepository;
 import com.liuyansh.repository.SettingsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.client.RestTemplate;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 @Service
 public class EmailService {
+    public record DigestResult(boolean sent, long messageCount, String detail) {}
+    private record RenderedDigest(Path body, ActivityTotals totals) {}
+    private static final int SNIPPET_LENGTH = 200;
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
     private final SettingsRepository settingsRepository;
     private final MessageRepository messageRepository;
-    private final ReplyRepository replyRepository;
-    private final LikeRepository likeRepository;
-    private final RestTemplate restTemplate = new RestTemplate();
-    public EmailService(SettingsRepository settingsRepository, MessageRepository messageRepository, ReplyRepository replyRepository, LikeRepository likeRepository) {
+    private final ActivityDailyRollupRepository dailyRollupRepository;
+    private final ActivityMessageRollupRepository messageRollupRepository;
+    private final EmailSendLogRepository sendLogRepository;
+    private final ActivityAggregator activityAggregator;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final MeterRegistry meterRegistry;
+    private final int topMessages;
+    private final int sendLogMaxEntries;
+    public EmailService(SettingsRepository settingsRepository, MessageRepository messageRepository,
+                        ActivityDailyRollupRepository dailyRollupRepository, ActivityMessageRollupRepository messageRollupRepository,
+                        EmailSendLogRepository sendLogRepository, ActivityAggregator activityAggregator,
+                        RestTemplate emailRestTemplate, ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        @Value("${liuyan.digest.top-messages:20}") int topMessages,
+                        @Value("${liuyan.email.send-log.max-entries:50}") int sendLogMaxEntries) {
         this.settingsRepository = settingsRepository;
         this.messageRepository = messageRepository;
-        this.replyRepository = replyRepository;
-        this.likeRepository = likeRepository;
+        this.dailyRollupRepository = dailyRollupRepository;
+        this.messageRollupRepository = messageRollupRepository;
+        this.sendLogRepository = sendLogRepository;
+        this.activityAggregator = activityAggregator;
+        this.restTemplate = emailRestTemplate;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.topMessages = topMessages;
+        this.sendLogMaxEntries = sendLogMaxEntries;
     }
-    @Transactional
-    public void sendWeeklyEmail() {
-        logger.info("Executing sendWeeklyEmail job...");
+    public List<EmailSendLog> recentSendLogs() {
+        return sendLogRepository.findLatest(PageRequest.of(0, sendLogMaxEntries));
+    }
+    public DigestResult sendWeeklyDigest(Instant windowEnd, String idempotencyKey) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failed";
+        try {
+            DigestResult result = runWeeklyDigest(windowEnd, idempotencyKey);
+            outcome = result.sent() ? "sent" : "skipped";
+            return result;
+        } finally {
+            sample.stop(Timer.builder("digest.run").tag("outcome", outcome).publishPercentileHistogram().register(meterRegistry));
+        }
+    }
+    private DigestResult runWeeklyDigest(Instant windowEnd, String idempotencyKey) {
+        logger.info("Executing weekly digest {} up to {}", idempotencyKey, windowEnd);
         Settings settings = settingsRepository.findById("app-settings").orElse(new Settings());
         if (settings.getRecipient() == null || settings.getRecipient().isEmpty()) {
             logger.warn("Recipient email not configured. Skipping email job.");
-            return;
+            return new DigestResult(false, 0, "Recipient email not configured.");
         }
         Instant lastSent = settings.getLastSentTs() == null ? Instant.EPOCH : settings.getLastSentTs();
-        List<Message> newMessages = messageRepository.findByTsAfter(lastSent);
-        List<Reply> newReplies = replyRepository.findByTsAfter(lastSent);
-        List<Like> newLikes = likeRepository.findByTsAfter(lastSent);
-        if (newMessages.isEmpty() && newReplies.isEmpty() && newLikes.isEmpty()) {
+        if (!windowEnd.isAfter(lastSent)) {
+            return new DigestResult(false, 0, "Window already covered by an earlier digest.");
+        }
+        // Digests cover whole UTC days [day of last send, day of window end) from the rollups, so consecutive
+        // digests never overlap and the cost tracks the number of days and threads, not the size of the tables.
+        LocalDate from = ActivityAggregator.dayOf(lastSent);
+        LocalDate to = ActivityAggregator.dayOf(windowEnd);
+        if (!to.isAfter(from)) {
+            return new DigestResult(false, 0, "No complete day since the last digest.");
+        }
+        Instant required = to.atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant watermark = activityAggregator.catchUp(required);
+        if (watermark == null || watermark.isBefore(required)) {
+            // Thrown so the dispatch queue retries once the commit grace has passed.
+            throw new IllegalStateException("Activity is aggregated up to " + watermark + ", digest needs " + required);
+        }
+        RenderedDigest digest = readOnlyTransaction.execute(status -> render(from, to, required));
+        if (digest == null) {
             logger.info("No new activity. Skipping email.");
-            return;
+            return new DigestResult(false, 0, "No new activity.");
         }
-        String emailBody = buildEmailBody(newMessages, newReplies, newLikes);
-        if ("mock".equals(settings.getProvider())) {
-            logger.info("Mock sending email to {}: {}", settings.getRecipient(), emailBody);
-        } else {
-            // Implement actual HTTP sending logic here using RestTemplate
-            logger.info("HTTP sending not implemented in this demo.");
+        ActivityTotals totals = digest.totals();
+        String response;
+        try {
+            if ("mock".equals(settings.getProvider())) {
+                logger.info("Mock sending email to {} ({} bytes)", settings.getRecipient(), Files.size(digest.body()));
+                if (logger.isDebugEnabled()) {
+                    try (Stream<String> lines = Files.lines(digest.body(), StandardCharsets.UTF_8)) {
+                        lines.forEach(logger::debug);
+                    }
+                }
+                response = "Mock send to " + settings.getRecipient();
+            } else {
+                response = sendOverHttp(settings, digest.body(), idempotencyKey);
+            }
+        } catch (IOException e) {
+            recordSendLog(totals, "failure", e.toString());
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            recordSendLog(totals, "failure", e.toString());
+            throw e;
+        } finally {
+            deleteQuietly(digest.body());
         }
-        settings.setLastSentTs(Instant.now());
-        // Add to send logs (simplified)
+        settings.setLastSentTs(windowEnd);
         settingsRepository.save(settings);
+        recordSendLog(totals, "success", response);
         logger.info("Email job finished successfully.");
+        return new DigestResult(true, totals.messages(), "Sent to " + settings.getRecipient());
+    }
+    private RenderedDigest render(LocalDate from, LocalDate to, Instant required) {
+        // Rendering may run on a read replica, which must already show the rollups the catch-up just committed.
+        Instant visible = activityAggregator.visibleWatermark();
+        if (visible == null || visible.isBefore(required)) {
+            throw new IllegalStateException("Rollups are visible up to " + visible + ", digest needs " + required);
+        }
+        ActivityTotals totals = dailyRollupRepository.sumBetween(from, to);
+        meterRegistry.summary("digest.rows", "kind", "messages").record(totals.messages());
+        meterRegistry.summary("digest.rows", "kind", "replies").record(totals.replies());
+        meterRegistry.summary("digest.rows", "kind", "likes").record(Math.max(totals.likes(), 0));
+        if (totals.messages() == 0 && totals.replies() == 0 && totals.likes() == 0) return null;
+        List<UUID> topIds = messageRollupRepository.findTopMessageIds(from, to, PageRequest.of(0, topMessages));
+        Map<UUID, String> texts = messageRepository.findAllById(topIds).stream()
+                .collect(Collectors.toMap(Message::getId, m -> m.getText() == null ? "" : m.getText()));
+        Stream<String> topTexts = topIds.stream().map(texts::get).filter(t -> t != null);
+        return new RenderedDigest(renderEmailBody(totals, topTexts), totals);
+    }
+    private void recordSendLog(ActivityTotals totals, String status, String response) {
+        String snippet = response == null ? "" : response.length() <= SNIPPET_LENGTH ? response : response.substring(0, SNIPPET_LENGTH);
+        try {
+            writeTransaction.executeWithoutResult(tx -> {
+                sendLogRepository.save(new EmailSendLog(null, Instant.now(), totals.messages(), totals.replies(), totals.likes(), status, snippet));
+                // Keep the newest entries only; everything below the cap's last id goes.
+                sendLogRepository.findLatest(PageRequest.of(sendLogMaxEntries - 1, 1)).stream().findFirst()
+                        .ifPresent(oldest -> sendLogRepository.deleteOlderThan(oldest.getId()));
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Could not record email send log", e);
+        }
+    }
+    private String sendOverHttp(Settings settings, Path body, String idempotencyKey) {
+        return restTemplate.execute(settings.getApiUrl(), HttpMethod.POST, request -> {
+            request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            request.getHeaders().setBearerAuth(settings.getApiKey() == null ? "" : settings.getApiKey());
+            // Lets the provider drop a duplicate when a retry follows a send whose response was lost.
+            request.getHeaders().set("Idempotency-Key", idempotencyKey);
+            if (request instanceof StreamingHttpOutputMessage streaming) {
+                streaming.setBody(out -> writeRequestJson(out, settings.getRecipient(), body));
+            } else {
+                writeRequestJson(request.getBody(), settings.getRecipient(), body);
+            }
+        }, response -> "HTTP " + response.getStatusCode().value() + " "
+                + new String(response.getBody().readNBytes(SNIPPET_LENGTH), StandardCharsets.UTF_8));
     }
-    private String buildEmailBody(List<Message> messages, List<Reply> replies, List<Like> likes) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Liuyan Studio Weekly Digest\n\n");
-        sb.append("New Messages: ").append(messages.size()).append("\n");
-        sb.append("New Replies: ").append(replies.size()).append("\n");
-        sb.append("New Likes: ").append(likes.size()).append("\n\n");
-        messages.forEach(m -> sb.append("- ").append(m.getText()).append("\n"));
-        return sb.toString();
+    private void writeRequestJson(OutputStream out, String recipient, Path body) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+             Reader text = Files.newBufferedReader(body, StandardCharsets.UTF_8)) {
+            json.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            json.writeStartObject();
+            json.writeStringField("to", recipient);
+            json.writeStringField("subject", "Liuyan Studio Weekly Digest");
+            json.writeFieldName("text");
+            json.writeString(text, -1);
+            json.writeEndObject();
+        }
+    }
+    private Path renderEmailBody(ActivityTotals totals, Stream<String> texts) {
+        try {
+            Path file = Files.createTempFile("liuyan-digest-", ".txt");
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writeEmailBody(out, totals.messages(), totals.replies(), Math.max(totals.likes(), 0), texts);
+            } catch (IOException | RuntimeException e) {
+                deleteQuietly(file);
+                throw e;
+            }
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    public static void writeEmailBody(Writer out, long messageCount, long replyCount, long likeCount, Stream<String> messageTexts) throws IOException {
+        out.write("Liuyan Studio Weekly Digest\n\n");
+        out.write("New Messages: " + messageCount + "\n");
+        out.write("New Replies: " + replyCount + "\n");
+        out.write("New Likes: " + likeCount + "\n\n");
+        // Texts are written as they are pulled from the stream, so heap use does not grow with the body.
+        for (String text : (Iterable<String>) messageTexts::iterator) {
+            out.write("- ");
+            out.write(text == null ? "" : text);
+            out.write("\n");
+        }
+    }
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete temporary digest file {}", file, e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,179 @@
+package com.liuyansh.service;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.liuyansh.dto.FeedPage;
+import com.liuyansh.dto.FeedSnapshot;
+import com.liuyansh.dto.MessageView;
+import com.liuyansh.dto.ReplyView;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+@Component
+public class FeedCache {
+    public record Key(String cursor, int limit) {}
+    // A cached page and the ids of every message and reply it shows.
+    private record Entry(FeedSnapshot snapshot, Set<UUID> ids) {}
+    private final Cache<Key, Entry> cache;
+    // Which cached pages show a message or reply, so a write drops those pages without scanning the others.
+    private final Map<UUID, Set<Key>> keysById = new ConcurrentHashMap<>();
+    // The board revision: bumped after every committed write. Invalidations stamp what they drop with it, so a load that
+    // started before the stamp and raced with that write is not cached; loads of unrelated pages are unaffected.
+    private final AtomicLong revision = new AtomicLong();
+    private final Cache<UUID, Long> invalidatedAt;
+    private volatile long firstPagesInvalidatedAt;
+    private volatile long allInvalidatedAt;
+    private final ObjectMapper objectMapper;
+    public FeedCache(@Value("${liuyan.feed.cache.max-weight-bytes:33554432}") long maxWeightBytes,
+                     @Value("${liuyan.feed.cache.ttl:30s}") Duration ttl,
+                     ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((Key key, Entry entry) -> (int) Math.min(
+                        estimateBytes(entry.snapshot().page()) + entry.snapshot().json().length + entry.snapshot().gzip().length, Integer.MAX_VALUE))
+                .expireAfterWrite(ttl)
+                .removalListener((Key key, Entry entry, RemovalCause cause) -> {
+                    if (key != null && entry != null) unindex(key, entry);
+                })
+                .recordStats()
+                .build();
+        // A stamp only has to outlive the loads that started before it; none of those can be cached for longer than the ttl.
+        this.invalidatedAt = Caffeine.newBuilder().expireAfterWrite(ttl).build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "feed");
+        Gauge.builder("cache.weight.bytes", cache, c -> c.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+                .tag("cache", "feed")
+                .register(meterRegistry);
+    }
+    public FeedSnapshot get(Key key, Supplier<FeedPage> loader) {
+        Entry cached = cache.getIfPresent(key);
+        if (cached != null) return cached.snapshot();
+        long before = revision.get();
+        FeedPage page = loader.get();
+        Entry entry = new Entry(encode(page, before), ids(page));
+        if (stale(key, entry, before)) return entry.snapshot();
+        cache.put(key, entry);
+        entry.ids().forEach(id -> keysById.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(key));
+        // An invalidation that stamped after the check above may have looked up the index before this page was in it.
+        if (stale(key, entry, before)) cache.asMap().remove(key, entry);
+        return entry.snapshot();
+    }
+    public long revision() {
+        return revision.get();
+    }
+    public void invalidateFirstPages() {
+        firstPagesInvalidatedAt = revision.incrementAndGet();
+        // Keyset pages are anchored to a cursor, so a new message can only change the pages that have none.
+        cache.asMap().keySet().removeIf(key -> key.cursor() == null);
+    }
+    public void invalidateMessage(UUID messageId) {
+        invalidate(Set.of(messageId));
+    }
+    // Drops every page showing one of the given messages or replies, e.g. after their like counters moved into the database.
+    public void invalidateTargets(Set<UUID> messageIds, Set<UUID> replyIds) {
+        invalidate(messageIds);
+        invalidate(replyIds);
+    }
+    public void invalidateAll() {
+        allInvalidatedAt = revision.incrementAndGet();
+        cache.invalidateAll();
+    }
+    private void invalidate(Set<UUID> ids) {
+        if (ids.isEmpty()) return;
+        long at = revision.incrementAndGet();
+        for (UUID id : ids) {
+            invalidatedAt.put(id, at);
+            Set<Key> keys = keysById.get(id);
+            if (keys != null) keys.forEach(cache::invalidate);
+        }
+    }
+    private boolean stale(Key key, Entry entry, long before) {
+        if (allInvalidatedAt > before || (key.cursor() == null && firstPagesInvalidatedAt > before)) return true;
+        for (UUID id : entry.ids()) {
+            Long at = invalidatedAt.getIfPresent(id);
+            if (at != null && at > before) return true;
+        }
+        return false;
+    }
+    private void unindex(Key key, Entry removed) {
+        for (UUID id : removed.ids()) {
+            // Removal is notified asynchronously; a newer page under the same key that shows the id keeps its index entry.
+            keysById.computeIfPresent(id, (k, keys) -> {
+                Entry current = cache.getIfPresent(key);
+                if (current == null || !current.ids().contains(id)) keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+    private static Set<UUID> ids(FeedPage page) {
+        Set<UUID> ids = new HashSet<>();
+        for (MessageView m : page.items()) {
+            ids.add(m.id());
+            addReplyIds(m.replies(), ids);
+        }
+        return ids;
+    }
+    private static void addReplyIds(List<ReplyView> replies, Set<UUID> ids) {
+        for (ReplyView r : replies) {
+            ids.add(r.id());
+            addReplyIds(r.replies(), ids);
+        }
+    }
+    // The body is encoded once per cached page; the ETag hashes the JSON, so identical content gets the same tag on every node.
+    private FeedSnapshot encode(FeedPage page, long atRevision) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(Map.of("success", true, "data", page));
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(json);
+            }
+            byte[] digest = Arrays.copyOf(MessageDigest.getInstance("SHA-256").digest(json), 16);
+            String etag = "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + "\"";
+            return new FeedSnapshot(page, json, compressed.toByteArray(), etag, atRevision);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode feed page", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    private static int estimateBytes(FeedPage page) {
+        long bytes = 64;
+        for (MessageView m : page.items()) {
+            bytes += 160 + 2L * length(m.text()) + estimateBytes(m.replies());
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+    private static long estimateBytes(List<ReplyView> replies) {
+        long bytes = 0;
+        for (ReplyView r : replies) {
+            bytes += 160 + 2L * length(r.text()) + estimateBytes(r.replies());
+        }
+        return bytes;
+    }
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
+    }
+}
@@ -0,0 +1,253 @@
+package com.liuyansh.service;
+import com.liuyansh.dto.FeedEvent;
+import com.liuyansh.dto.LikeDelta;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+@Component
+public class FeedEventBroadcaster {
+    private static final Logger logger = LoggerFactory.getLogger(FeedEventBroadcaster.class);
+    private final AtomicLong sequence = new AtomicLong();
+    // Wire ids are "<epoch>-<sequence>": the sequence restarts with the process and differs per node, so an id minted by
+    // another boot or node cannot be resumed from and gets a reset instead of a silently wrong replay.
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final ArrayDeque<FeedEvent> history = new ArrayDeque<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // Events waiting to be offered to subscribers, in id order; at most one fan-out task drains it at a time.
+    private final Queue<FeedEvent> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean fanningOut = new AtomicBoolean();
+    // Fan-out only touches in-memory queues, so it gets its own thread and never waits behind a blocked write.
+    private final ExecutorService fanOutThread = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "sse-fanout");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Executor senders;
+    private final Counter slowDisconnects;
+    private final int historySize;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    public FeedEventBroadcaster(@Value("${liuyan.stream.history-size:1024}") int historySize,
+                                @Value("${liuyan.stream.buffer-size:256}") int bufferSize,
+                                @Value("${liuyan.stream.max-subscribers:10000}") int maxSubscribers,
+                                @Value("${liuyan.stream.timeout:30m}") Duration timeout,
+                                @Value("${liuyan.stream.sender-threads:8}") int senderThreads,
+                                @Value("${liuyan.stream.max-sender-threads:64}") int maxSenderThreads,
+                                @Value("${liuyan.stream.send-timeout:10s}") Duration sendTimeout,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                MeterRegistry meterRegistry) {
+        this.historySize = historySize;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMillis = timeout.toMillis();
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        Gauge.builder("stream.subscribers", subscribers, Set::size).register(meterRegistry);
+        this.slowDisconnects = Counter.builder("stream.slow.disconnects").register(meterRegistry);
+        // On virtual threads a blocked write to a slow client costs nothing, so each drain gets its own thread. On platform
+        // threads the pool grows past its core size while clients are slow; when even that is exhausted the drain is
+        // skipped and retried on the next event or heartbeat (see Subscriber.scheduleDrain).
+        this.senders = virtualThreads ? new VirtualThreadTaskExecutor("sse-")
+                : new ThreadPoolExecutor(senderThreads, Math.max(senderThreads, maxSenderThreads), 60, TimeUnit.SECONDS, new SynchronousQueue<>());
+    }
+    public Optional<SseEmitter> subscribe(String lastEventId) {
+        if (subscribers.size() >= maxSubscribers) return Optional.empty();
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMillis));
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(subscriber::close);
+        subscriber.emitter.onError(e -> subscriber.close());
+        synchronized (history) {
+            // Registering under the history lock means no event falls between the replay and live delivery.
+            if (lastEventId != null) {
+                long resumeAfter = resumePoint(lastEventId);
+                FeedEvent oldest = history.peekFirst();
+                if (resumeAfter < 0 || resumeAfter > sequence.get() || (oldest != null && oldest.id() > resumeAfter + 1)) {
+                    // From another boot or node, or older than our history: nothing can be replayed; the client must refetch.
+                    subscriber.overflowed = true;
+                } else {
+                    for (FeedEvent event : history) {
+                        if (event.id() > resumeAfter) subscriber.offer(event);
+                    }
+                }
+            }
+            // Everything up to here was either replayed or predates the subscription, so the fan-out skips it.
+            subscriber.startAfter = sequence.get();
+            subscribers.add(subscriber);
+        }
+        subscriber.scheduleDrain();
+        return Optional.of(subscriber.emitter);
+    }
+    // Runs in afterCommit on the writing request's thread, so it only appends; offering to every subscriber happens on a sender.
+    public void publish(String type, Object data) {
+        synchronized (history) {
+            FeedEvent event = new FeedEvent(sequence.incrementAndGet(), type, data);
+            history.addLast(event);
+            if (history.size() > historySize) history.removeFirst();
+            outbox.add(event);
+        }
+        scheduleFanOut();
+    }
+    // The sequence part of an id minted by this boot, or -1 for anything else.
+    private long resumePoint(String lastEventId) {
+        String prefix = epoch + "-";
+        if (!lastEventId.startsWith(prefix)) return -1;
+        try {
+            return Long.parseLong(lastEventId.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    private void scheduleFanOut() {
+        if (fanningOut.compareAndSet(false, true)) fanOutThread.execute(this::fanOut);
+    }
+    private void fanOut() {
+        try {
+            for (FeedEvent event; (event = outbox.poll()) != null; ) {
+                for (Subscriber subscriber : subscribers) {
+                    if (event.id() > subscriber.startAfter) subscriber.offer(event);
+                }
+            }
+            for (Subscriber subscriber : subscribers) subscriber.scheduleDrain();
+        } finally {
+            fanningOut.set(false);
+        }
+        // An event queued after the last poll but before the flag was cleared would otherwise wait for the next publish.
+        if (!outbox.isEmpty()) scheduleFanOut();
+    }
+    @Scheduled(fixedDelayString = "${liuyan.stream.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        // Keeps proxies from closing idle streams and surfaces dead connections as write errors.
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long started = subscriber.sendStartedAt;
+            if (started != 0 && now - started > sendTimeoutNanos) {
+                // A write stuck this long is a client not reading; drop it so nothing more is queued or scheduled for it.
+                slowDisconnects.increment();
+                subscriber.close();
+                continue;
+            }
+            subscriber.heartbeatDue = true;
+            subscriber.scheduleDrain();
+        }
+    }
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(Subscriber::close);
+        fanOutThread.shutdownNow();
+        if (senders instanceof ExecutorService pool) pool.shutdownNow();
+    }
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final ArrayDeque<FeedEvent> queue = new ArrayDeque<>();
+        private boolean draining;
+        private volatile long startAfter;
+        private volatile boolean overflowed;
+        private volatile boolean heartbeatDue;
+        private volatile long sendStartedAt; // System.nanoTime() while a write is in flight, 0 otherwise
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+        private synchronized void offer(FeedEvent event) {
+            if (event.data() instanceof LikeDelta delta) {
+                // Like deltas for the same target coalesce into one, re-queued at the tail with the newest id.
+                for (Iterator<FeedEvent> it = queue.iterator(); it.hasNext(); ) {
+                    FeedEvent queued = it.next();
+                    if (queued.data() instanceof LikeDelta previous && previous.targetId().equals(delta.targetId())) {
+                        it.remove();
+                        event = new FeedEvent(event.id(), event.type(), previous.plus(delta));
+                        break;
+                    }
+                }
+            }
+            if (queue.size() >= bufferSize) {
+                // Slow consumer: drop the oldest event and tell the client to refetch once it catches up.
+                queue.pollFirst();
+                overflowed = true;
+            }
+            queue.addLast(event);
+        }
+        private void scheduleDrain() {
+            synchronized (this) {
+                if (draining || (queue.isEmpty() && !overflowed && !heartbeatDue)) return;
+                draining = true;
+            }
+            try {
+                senders.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    draining = false;
+                }
+            }
+        }
+        private void drain() {
+            try {
+                while (true) {
+                    FeedEvent event;
+                    boolean reset;
+                    boolean ping;
+                    synchronized (this) {
+                        event = queue.pollFirst();
+                        reset = overflowed;
+                        ping = heartbeatDue && event == null;
+                        overflowed = false;
+                        heartbeatDue = false;
+                        if (event == null && !reset && !ping) {
+                            draining = false;
+                            return;
+                        }
+                    }
+                    sendStartedAt = System.nanoTime();
+                    if (reset) emitter.send(SseEmitter.event().name("reset").data("{}", MediaType.APPLICATION_JSON));
+                    if (ping) emitter.send(SseEmitter.event().comment("ping"));
+                    if (event != null) {
+                        emitter.send(SseEmitter.event().id(epoch + "-" + event.id()).name(event.type()).data(event.data(), MediaType.APPLICATION_JSON));
+                    }
+                    sendStartedAt = 0;
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Dropping stream subscriber: {}", e.getMessage());
+                close();
+            }
+        }
+        private void close() {
+            subscribers.remove(this);
+            synchronized (this) {
+                queue.clear();
+                draining = false;
+            }
+            try {
+                emitter.complete();
+            } catch (IllegalStateException ignored) {
+                // Already completed.
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.liuyansh.service;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+// Bounded set of candidate messages scored with forward decay: a contribution made at time t is stored as
+// weight * e^(lambda * (t - landmark)), so stored scores never need touching as the clock moves and comparing them ranks
+// by the decayed value. Columns are primitive arrays over dense slots, found through an open-addressing table.
+// Not thread-safe; HotMessageService serializes access.
+final class HotMessageRanking {
+    record Payload(UUID id, String userId, String phoneMasked, String text, Instant ts) {}
+    record Ranked(Payload payload, int likes, int replies, double score) {}
+    // e^300 is far from overflow, yet reached only after ~430 half-lives, so renormalizing is rare.
+    private static final double MAX_EXPONENT = 300;
+    private final int capacity;
+    private final double lambdaPerMilli;
+    private long landmarkMillis;
+    private final long[] idHigh;
+    private final long[] idLow;
+    private final double[] scores;
+    private final int[] likes;
+    private final int[] replies;
+    private final Payload[] payloads;
+    private final int[] table; // dense slot + 1; 0 marks an empty bucket
+    // Min-heap of all slots by score, so the weakest candidate is candidates[0]; heapIndex is each slot's position in it.
+    private final int[] candidates;
+    private final int[] heapIndex;
+    private final int mask;
+    private int size;
+    HotMessageRanking(int capacity, Duration halfLife, Instant landmark) {
+        this.capacity = capacity;
+        this.lambdaPerMilli = Math.log(2) / halfLife.toMillis();
+        this.landmarkMillis = landmark.toEpochMilli();
+        this.idHigh = new long[capacity];
+        this.idLow = new long[capacity];
+        this.scores = new double[capacity];
+        this.likes = new int[capacity];
+        this.replies = new int[capacity];
+        this.payloads = new Payload[capacity];
+        this.candidates = new int[capacity];
+        this.heapIndex = new int[capacity];
+        this.table = new int[Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1];
+        this.mask = table.length - 1;
+    }
+    int size() {
+        return size;
+    }
+    // Adds a weighted contribution at the given time; a negative weight (an unlike) never takes a score below zero.
+    void add(UUID id, double weight, Instant at, int likeDelta, int replyDelta) {
+        double exponent = lambdaPerMilli * (at.toEpochMilli() - landmarkMillis);
+        if (exponent > MAX_EXPONENT) {
+            renormalize(at.toEpochMilli());
+            exponent = 0;
+        }
+        double contribution = weight * Math.exp(exponent);
+        int slot = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (slot < 0) {
+            if (contribution <= 0) return;
+            slot = insert(id, contribution);
+            if (slot < 0) return;
+        }
+        scores[slot] = Math.max(0, scores[slot] + contribution);
+        restoreCandidate(heapIndex[slot]);
+        likes[slot] = Math.max(0, likes[slot] + likeDelta);
+        replies[slot] = Math.max(0, replies[slot] + replyDelta);
+    }
+    // Attaches the display data and the authoritative counters; ignored for messages that are not (or no longer) tracked.
+    void hydrate(Payload payload, int likeCount, int replyCount) {
+        int slot = find(payload.id().getMostSignificantBits(), payload.id().getLeastSignificantBits());
+        if (slot < 0) return;
+        payloads[slot] = payload;
+        likes[slot] = likeCount;
+        replies[slot] = replyCount;
+    }
+    void remove(UUID id) {
+        int slot = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (slot >= 0) remove(slot);
+    }
+    List<UUID> missingPayloads(int max) {
+        List<UUID> ids = new ArrayList<>();
+        for (int slot = 0; slot < size && ids.size() < max; slot++) {
+            if (payloads[slot] == null) ids.add(new UUID(idHigh[slot], idLow[slot]));
+        }
+        return ids;
+    }
+    // Selects the n best hydrated slots with a bounded min-heap, then orders them best first.
+    List<Ranked> top(int n, Instant now) {
+        int[] heap = new int[Math.max(n, 1)];
+        int heapSize = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (payloads[slot] == null || scores[slot] <= 0) continue;
+            if (heapSize < n) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++);
+            } else if (n > 0 && scores[slot] > scores[heap[0]]) {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+        double decay = Math.exp(-lambdaPerMilli * (now.toEpochMilli() - landmarkMillis));
+        Ranked[] ranked = new Ranked[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            int slot = heap[0];
+            ranked[i] = new Ranked(payloads[slot], likes[slot], replies[slot], scores[slot] * decay);
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+        }
+        return Arrays.asList(ranked);
+    }
+    private void siftUp(int[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[heap[parent]] <= scores[heap[i]]) return;
+            swap(heap, parent, i);
+            i = parent;
+        }
+    }
+    private void siftDown(int[] heap, int heapSize) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= heapSize) return;
+            int smallest = left + 1 < heapSize && scores[heap[left + 1]] < scores[heap[left]] ? left + 1 : left;
+            if (scores[heap[i]] <= scores[heap[smallest]]) return;
+            swap(heap, i, smallest);
+            i = smallest;
+        }
+    }
+    private static void swap(int[] heap, int a, int b) {
+        int t = heap[a];
+        heap[a] = heap[b];
+        heap[b] = t;
+    }
+    // When full, a newcomer replaces the weakest candidate, but only if it would outrank it.
+    private int insert(UUID id, double contribution) {
+        if (size == capacity) {
+            int weakest = candidates[0];
+            if (scores[weakest] >= contribution) return -1;
+            remove(weakest);
+        }
+        int slot = size++;
+        candidates[slot] = slot;
+        heapIndex[slot] = slot;
+        idHigh[slot] = id.getMostSignificantBits();
+        idLow[slot] = id.getLeastSignificantBits();
+        scores[slot] = 0;
+        likes[slot] = 0;
+        replies[slot] = 0;
+        payloads[slot] = null;
+        int bucket = bucket(idHigh[slot], idLow[slot]);
+        while (table[bucket] != 0) bucket = (bucket + 1) & mask;
+        table[bucket] = slot + 1;
+        return slot;
+    }
+    private int find(long high, long low) {
+        for (int bucket = bucket(high, low); table[bucket] != 0; bucket = (bucket + 1) & mask) {
+            int slot = table[bucket] - 1;
+            if (idHigh[slot] == high && idLow[slot] == low) return slot;
+        }
+        return -1;
+    }
+    private int bucketOf(int slot) {
+        int bucket = bucket(idHigh[slot], idLow[slot]);
+        while (table[bucket] != slot + 1) bucket = (bucket + 1) & mask;
+        return bucket;
+    }
+    // Frees the slot's bucket with backward-shift deletion, then moves the last dense slot into the hole.
+    private void remove(int slot) {
+        int hole = bucketOf(slot);
+        for (int bucket = (hole + 1) & mask; table[bucket] != 0; bucket = (bucket + 1) & mask) {
+            int other = table[bucket] - 1;
+            int home = bucket(idHigh[other], idLow[other]);
+            // The entry may move back into the hole unless its home lies cyclically within (hole, bucket].
+            if (((bucket - home) & mask) >= ((bucket - hole) & mask)) {
+                table[hole] = table[bucket];
+                hole = bucket;
+            }
+        }
+        table[hole] = 0;
+        int position = heapIndex[slot];
+        int tail = candidates[size - 1];
+        candidates[position] = tail;
+        heapIndex[tail] = position;
+        int last = --size;
+        if (position < size) restoreCandidate(position);
+        if (slot != last) {
+            table[bucketOf(last)] = slot + 1;
+            heapIndex[slot] = heapIndex[last];
+            candidates[heapIndex[slot]] = slot;
+            idHigh[slot] = idHigh[last];
+            idLow[slot] = idLow[last];
+            scores[slot] = scores[last];
+            likes[slot] = likes[last];
+            replies[slot] = replies[last];
+            payloads[slot] = payloads[last];
+        }
+        payloads[last] = null;
+    }
+    // Moves the candidate at the given heap position up or down until the heap order holds again.
+    private void restoreCandidate(int position) {
+        int i = position;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[candidates[parent]] <= scores[candidates[i]]) break;
+            swapCandidates(parent, i);
+            i = parent;
+        }
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) return;
+            int smallest = left + 1 < size && scores[candidates[left + 1]] < scores[candidates[left]] ? left + 1 : left;
+            if (scores[candidates[i]] <= scores[candidates[smallest]]) return;
+            swapCandidates(i, smallest);
+            i = smallest;
+        }
+    }
+    private void swapCandidates(int a, int b) {
+        int t = candidates[a];
+        candidates[a] = candidates[b];
+        candidates[b] = t;
+        heapIndex[candidates[a]] = a;
+        heapIndex[candidates[b]] = b;
+    }
+    // Scaling every score by one factor keeps the candidate heap in order.
+    private void renormalize(long newLandmarkMillis) {
+        double factor = Math.exp(-lambdaPerMilli * (newLandmarkMillis - landmarkMillis));
+        for (int slot = 0; slot < size; slot++) scores[slot] *= factor;
+        landmarkMillis = newLandmarkMillis;
+    }
+    int bucket(long high, long low) {
+        long h = (high ^ low) * 0x9E37_79B9_7F4A_7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
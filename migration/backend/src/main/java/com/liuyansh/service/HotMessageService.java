@@ -0,0 +1,183 @@
+package com.liuyansh.service;
+import com.liuyansh.dto.HotMessage;
+import com.liuyansh.entity.Message;
+import com.liuyansh.repository.MessageRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+@Service
+public class HotMessageService {
+    private static final Logger logger = LoggerFactory.getLogger(HotMessageService.class);
+    private static final int HYDRATE_BATCH = 500;
+    private record Update(UUID messageId, double weight, Instant at, int likeDelta, int replyDelta, HotMessageRanking.Payload payload) {}
+    private final MessageRepository messageRepository;
+    private final LikeCounterBuffer likeCounterBuffer;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int capacity;
+    private final int topSize;
+    private final Duration halfLife;
+    private final Duration rebuildWindow;
+    private final double messageWeight;
+    private final double likeWeight;
+    private final double replyWeight;
+    private final Object lock = new Object();
+    private HotMessageRanking ranking; // Guarded by lock, as are the two fields below
+    private List<Update> updatesDuringRebuild; // Non-null while a rebuild runs
+    private boolean dirty;
+    // Readers only ever see this published list, so a request costs O(limit) and never touches the database.
+    private volatile List<HotMessage> published = List.of();
+    public HotMessageService(MessageRepository messageRepository, LikeCounterBuffer likeCounterBuffer, DataSource dataSource,
+                             PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                             @Value("${liuyan.hot.capacity:10000}") int capacity,
+                             @Value("${liuyan.hot.top-size:100}") int topSize,
+                             @Value("${liuyan.hot.half-life:6h}") Duration halfLife,
+                             @Value("${liuyan.hot.rebuild-window:7d}") Duration rebuildWindow,
+                             @Value("${liuyan.hot.weight.message:1}") double messageWeight,
+                             @Value("${liuyan.hot.weight.like:1}") double likeWeight,
+                             @Value("${liuyan.hot.weight.reply:2}") double replyWeight) {
+        this.messageRepository = messageRepository;
+        this.likeCounterBuffer = likeCounterBuffer;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(1000);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.capacity = capacity;
+        this.topSize = topSize;
+        this.halfLife = halfLife;
+        this.rebuildWindow = rebuildWindow;
+        this.messageWeight = messageWeight;
+        this.likeWeight = likeWeight;
+        this.replyWeight = replyWeight;
+        this.ranking = new HotMessageRanking(capacity, halfLife, Instant.now());
+        Gauge.builder("hot.candidates", this, s -> s.candidates()).register(meterRegistry);
+    }
+    public List<HotMessage> hot(Integer limit) {
+        List<HotMessage> current = published;
+        int n = Math.min(Math.max(limit == null ? 20 : limit, 1), topSize);
+        return current.size() <= n ? current : current.subList(0, n);
+    }
+    public void onMessageCreated(UUID messageId, String userId, String phoneMasked, String text, Instant ts) {
+        apply(new Update(messageId, messageWeight, ts, 0, 0, new HotMessageRanking.Payload(messageId, userId, phoneMasked, text, ts)));
+    }
+    public void onReplyCreated(UUID messageId, Instant ts) {
+        apply(new Update(messageId, replyWeight, ts, 0, 1, null));
+    }
+    // An unlike takes its weight off at the current time, which removes at least as much as the like once added.
+    public void onMessageLiked(UUID messageId, int delta) {
+        apply(new Update(messageId, likeWeight * delta, Instant.now(), delta, 0, null));
+    }
+    // Runs off the startup thread; until it finishes, hot() serves the empty published list.
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+    }
+    // The scan covers [now - window, cutoff); updates at or after the cutoff are replayed from what arrived meanwhile.
+    public void rebuild() {
+        Instant cutoff = Instant.now();
+        synchronized (lock) {
+            if (updatesDuringRebuild != null) return;
+            updatesDuringRebuild = new ArrayList<>();
+        }
+        try {
+            HotMessageRanking fresh = new HotMessageRanking(capacity, halfLife, cutoff);
+            readOnlyTransaction.executeWithoutResult(status -> scan(cutoff.minus(rebuildWindow), cutoff, fresh));
+            synchronized (lock) {
+                for (Update update : updatesDuringRebuild) {
+                    if (!update.at().isBefore(cutoff)) apply(fresh, update);
+                }
+                ranking = fresh;
+                dirty = true;
+            }
+            logger.info("Rebuilt hot message ranking with {} candidates", fresh.size());
+        } finally {
+            synchronized (lock) {
+                updatesDuringRebuild = null;
+            }
+        }
+        publish();
+    }
+    // Candidates that entered through a like or reply on an older message are hydrated here, off the request path.
+    @Scheduled(fixedDelayString = "${liuyan.hot.publish-interval-ms:1000}")
+    public void publish() {
+        List<UUID> missing;
+        synchronized (lock) {
+            if (!dirty) return;
+            missing = ranking.missingPayloads(HYDRATE_BATCH);
+        }
+        if (!missing.isEmpty()) {
+            List<Message> rows = readOnlyTransaction.execute(status -> messageRepository.findAllById(missing));
+            synchronized (lock) {
+                Set<UUID> found = new HashSet<>();
+                for (Message m : rows) {
+                    found.add(m.getId());
+                    ranking.hydrate(new HotMessageRanking.Payload(m.getId(), m.getUserId(), m.getPhoneMasked(), m.getText(), m.getTs()),
+                            m.getLikes() + (int) likeCounterBuffer.pending(LikeCounterBuffer.Target.MESSAGE, m.getId()), m.getReplyCount());
+                }
+                // Rows that are gone (e.g. after a snapshot restore) leave the ranking instead of being looked up again.
+                missing.stream().filter(id -> !found.contains(id)).forEach(ranking::remove);
+            }
+        }
+        List<HotMessage> top = new ArrayList<>(topSize);
+        synchronized (lock) {
+            for (HotMessageRanking.Ranked r : ranking.top(topSize, Instant.now())) {
+                HotMessageRanking.Payload p = r.payload();
+                top.add(new HotMessage(p.id(), p.userId(), p.phoneMasked(), p.text(), p.ts(), r.likes(), r.replies(), r.score()));
+            }
+            dirty = !ranking.missingPayloads(1).isEmpty();
+        }
+        published = List.copyOf(top);
+    }
+    private int candidates() {
+        synchronized (lock) {
+            return ranking.size();
+        }
+    }
+    private void apply(Update update) {
+        synchronized (lock) {
+            apply(ranking, update);
+            if (updatesDuringRebuild != null) updatesDuringRebuild.add(update);
+            dirty = true;
+        }
+    }
+    private static void apply(HotMessageRanking target, Update update) {
+        target.add(update.messageId(), update.weight(), update.at(), update.likeDelta(), update.replyDelta());
+        if (update.payload() != null) target.hydrate(update.payload(), 0, 0);
+    }
+    private void scan(Instant since, Instant until, HotMessageRanking target) {
+        Object[] window = {OffsetDateTime.ofInstant(since, ZoneOffset.UTC), OffsetDateTime.ofInstant(until, ZoneOffset.UTC)};
+        jdbcTemplate.query("SELECT id, user_id, phone_masked, text, ts, likes, reply_count FROM messages WHERE ts >= ? AND ts < ?", (RowCallbackHandler) rs -> {
+            UUID id = rs.getObject(1, UUID.class);
+            Instant ts = rs.getObject(5, OffsetDateTime.class).toInstant();
+            target.add(id, messageWeight, ts, 0, 0);
+            target.hydrate(new HotMessageRanking.Payload(id, rs.getString(2), rs.getString(3), rs.getString(4), ts),
+                    rs.getInt(6) + (int) likeCounterBuffer.pending(LikeCounterBuffer.Target.MESSAGE, id), rs.getInt(7));
+        }, window);
+        jdbcTemplate.query("SELECT message_id, ts FROM replies WHERE ts >= ? AND ts < ?", (RowCallbackHandler) rs ->
+                target.add(rs.getObject(1, UUID.class), replyWeight, rs.getObject(2, OffsetDateTime.class).toInstant(), 0, 0), window);
+        jdbcTemplate.query("SELECT message_id, ts FROM likes WHERE message_id IS NOT NULL AND ts >= ? AND ts < ?", (RowCallbackHandler) rs ->
+                target.add(rs.getObject(1, UUID.class), likeWeight, rs.getObject(2, OffsetDateTime.class).toInstant(), 0, 0), window);
+    }
+}
@@ -0,0 +1,67 @@
+package com.liuyansh.service;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+@Component
+@ConditionalOnProperty(name = "liuyan.auth.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOtpStore implements OtpStore {
+    // Phone key, code, attempt counter and cache node overhead, rounded up.
+    private static final long ESTIMATED_ENTRY_BYTES = 256;
+    private record Entry(String code, long ttlNanos, AtomicInteger attempts) {}
+    private final Cache<String, Entry> codes;
+    private final int maxAttempts;
+    public InMemoryOtpStore(@Value("${liuyan.auth.otp.max-entries:100000}") long maxEntries,
+                            @Value("${liuyan.auth.otp.max-attempts:5}") int maxAttempts,
+                            MeterRegistry meterRegistry) {
+        this.maxAttempts = maxAttempts;
+        // Per-entry expiry runs on Caffeine's timer wheel; the size cap bounds heap under an enumeration flood.
+        this.codes = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.ttlNanos();
+                    }
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return entry.ttlNanos();
+                    }
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, codes, "otp-codes");
+        Gauge.builder("auth.store.estimated.bytes", codes, c -> c.estimatedSize() * ESTIMATED_ENTRY_BYTES)
+                .tag("store", "otp-codes")
+                .register(meterRegistry);
+    }
+    @Override
+    public void save(String phone, String code, Duration ttl) {
+        codes.put(phone, new Entry(code, ttl.toNanos(), new AtomicInteger()));
+    }
+    @Override
+    public boolean verifyAndConsume(String phone, String code) {
+        Entry entry = codes.getIfPresent(phone);
+        if (entry == null || code == null) return false;
+        if (entry.attempts().incrementAndGet() > maxAttempts) {
+            codes.asMap().remove(phone, entry);
+            return false;
+        }
+        if (!MessageDigest.isEqual(entry.code().getBytes(StandardCharsets.UTF_8), code.getBytes(StandardCharsets.UTF_8))) return false;
+        // Only the caller that removes the entry wins, so a code cannot be redeemed twice.
+        return codes.asMap().remove(phone, entry);
+    }
+}
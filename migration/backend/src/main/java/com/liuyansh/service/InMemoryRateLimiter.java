@@ -0,0 +1,65 @@
+package com.liuyansh.service;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.util.Arrays;
+@Component
+@ConditionalOnProperty(name = "liuyan.auth.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRateLimiter implements RateLimiter {
+    private static final long ESTIMATED_WINDOW_BYTES = 160;
+    // Sliding-window log holding the last `limit` hit times in a ring; the oldest decides admission.
+    private static final class Window {
+        private final long[] hits;
+        private final long windowNanos;
+        private int next;
+        private Window(int limit, long windowNanos) {
+            this.hits = new long[limit];
+            this.windowNanos = windowNanos;
+            Arrays.fill(hits, Long.MIN_VALUE);
+        }
+        private synchronized long tryAcquire(long now) {
+            long oldest = hits[next];
+            if (oldest != Long.MIN_VALUE && now - oldest < windowNanos) return oldest + windowNanos - now;
+            hits[next] = now;
+            next = (next + 1) % hits.length;
+            return 0;
+        }
+    }
+    private final Cache<String, Window> windows;
+    public InMemoryRateLimiter(@Value("${liuyan.auth.rate-limit.max-entries:200000}") long maxEntries, MeterRegistry meterRegistry) {
+        // A window is useless once its span has passed since the last hit, so it expires then (timer wheel).
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<String, Window>() {
+                    @Override
+                    public long expireAfterCreate(String key, Window window, long currentTime) {
+                        return window.windowNanos;
+                    }
+                    @Override
+                    public long expireAfterUpdate(String key, Window window, long currentTime, long currentDuration) {
+                        return window.windowNanos;
+                    }
+                    @Override
+                    public long expireAfterRead(String key, Window window, long currentTime, long currentDuration) {
+                        return window.windowNanos;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, windows, "rate-limit-windows");
+        Gauge.builder("auth.store.estimated.bytes", windows, c -> c.estimatedSize() * ESTIMATED_WINDOW_BYTES)
+                .tag("store", "rate-limit-windows")
+                .register(meterRegistry);
+    }
+    @Override
+    public Duration tryAcquire(String key, int limit, Duration window) {
+        return Duration.ofNanos(windows.get(key, k -> new Window(limit, window.toNanos())).tryAcquire(System.nanoTime()));
+    }
+}
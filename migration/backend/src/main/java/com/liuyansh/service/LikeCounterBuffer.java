@@ -0,0 +1,90 @@
+package com.liuyansh.service;
+import com.liuyansh.repository.MessageRepository;
+import com.liuyansh.repository.ReplyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+@Component
+public class LikeCounterBuffer {
+    public enum Target { MESSAGE, REPLY }
+    private static final Logger logger = LoggerFactory.getLogger(LikeCounterBuffer.class);
+    private final Map<UUID, LongAdder> messageDeltas = new ConcurrentHashMap<>();
+    private final Map<UUID, LongAdder> replyDeltas = new ConcurrentHashMap<>();
+    private final MessageRepository messageRepository;
+    private final ReplyRepository replyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final FeedCache feedCache;
+    private final Counter flushedRows;
+    private final Counter flushFailures;
+    public LikeCounterBuffer(MessageRepository messageRepository, ReplyRepository replyRepository, TransactionTemplate transactionTemplate,
+                             FeedCache feedCache, MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.replyRepository = replyRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.feedCache = feedCache;
+        this.flushedRows = Counter.builder("likes.flush.rows").register(meterRegistry);
+        this.flushFailures = Counter.builder("likes.flush.failures").register(meterRegistry);
+        Gauge.builder("likes.pending.targets", this, b -> b.messageDeltas.size() + b.replyDeltas.size()).register(meterRegistry);
+    }
+    public void add(Target target, UUID id, long delta) {
+        Map<UUID, LongAdder> deltas = deltas(target);
+        LongAdder adder = deltas.computeIfAbsent(id, k -> new LongAdder());
+        adder.add(delta);
+        if (deltas.get(id) != adder) {
+            // A flush retired this adder between our lookup and our add; move the orphaned delta to the live one.
+            long orphaned = adder.sumThenReset();
+            if (orphaned != 0) add(target, id, orphaned);
+        }
+    }
+    public long pending(Target target, UUID id) {
+        LongAdder adder = deltas(target).get(id);
+        return adder == null ? 0 : adder.sum();
+    }
+    @Scheduled(fixedDelayString = "${liuyan.likes.flush-interval-ms:1000}")
+    @PreDestroy
+    public void flush() {
+        Map<UUID, Long> messageBatch = drain(messageDeltas);
+        Map<UUID, Long> replyBatch = drain(replyDeltas);
+        if (messageBatch.isEmpty() && replyBatch.isEmpty()) return;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                messageBatch.forEach((id, delta) -> messageRepository.incrementLikes(id, Math.toIntExact(delta)));
+                replyBatch.forEach((id, delta) -> replyRepository.incrementLikes(id, Math.toIntExact(delta)));
+            });
+            // A feed load that read the rows before this commit but the pending deltas after the drain undercounted;
+            // invalidating the targets keeps in-flight loads of their pages out of the cache and drops any page cached in that window.
+            feedCache.invalidateTargets(messageBatch.keySet(), replyBatch.keySet());
+            flushedRows.increment(messageBatch.size() + replyBatch.size());
+            logger.debug("Flushed like deltas for {} messages and {} replies", messageBatch.size(), replyBatch.size());
+        } catch (RuntimeException e) {
+            flushFailures.increment();
+            logger.error("Failed to flush like deltas, re-queueing them", e);
+            messageBatch.forEach((id, delta) -> add(Target.MESSAGE, id, delta));
+            replyBatch.forEach((id, delta) -> add(Target.REPLY, id, delta));
+        }
+    }
+    private Map<UUID, Long> drain(Map<UUID, LongAdder> deltas) {
+        Map<UUID, Long> batch = new HashMap<>();
+        deltas.forEach((id, adder) -> {
+            long delta = adder.sumThenReset();
+            // Retire adders that saw no traffic since the last flush, then sweep up anything added during removal.
+            if (delta == 0 && deltas.remove(id, adder)) delta = adder.sumThenReset();
+            if (delta != 0) batch.merge(id, delta, Long::sum);
+        });
+        return batch;
+    }
+    private Map<UUID, LongAdder> deltas(Target target) {
+        return target == Target.MESSAGE ? messageDeltas : replyDeltas;
+    }
+}
@@ -1,64 +1,344 @@
 package com.liuyansh.service;
+import com.liuyansh.dto.FeedCursor;
+import com.liuyansh.dto.FeedPage;
+import com.liuyansh.dto.FeedSnapshot;
+import com.liuyansh.dto.FeedRow;
+import com.liuyansh.dto.LikeDelta;
+import com.liuyansh.dto.LikeState;
+import com.liuyansh.dto.LikeToggle;
+import com.liuyansh.dto.MessageView;
+import com.liuyansh.dto.ReplyCreated;
+import com.liuyansh.dto.ReplyRow;
+import com.liuyansh.dto.ReplyView;
+import com.liuyansh.entity.ActivityEvent;
 import com.liuyansh.entity.Like;
 import com.liuyansh.entity.Message;
 import com.liuyansh.entity.Reply;
+import com.liuyansh.repository.ActivityEventRepository;
 import com.liuyansh.repository.LikeRepository;
 import com.liuyansh.repository.MessageRepository;
 import com.liuyansh.repository.ReplyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 @Service
 public class MessageService {
+    private static final int MAX_TOGGLE_ATTEMPTS = 3;
     private final MessageRepository messageRepository;
     private final ReplyRepository replyRepository;
     private final LikeRepository likeRepository;
-    public MessageService(MessageRepository messageRepository, ReplyRepository replyRepository, LikeRepository likeRepository) {
+    private final ActivityEventRepository activityEventRepository;
+    private final LikeCounterBuffer likeCounterBuffer;
+    private final FeedCache feedCache;
+    private final FeedEventBroadcaster feedEventBroadcaster;
+    private final SearchService searchService;
+    private final HotMessageService hotMessageService;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final Counter likedCounter;
+    private final Counter unlikedCounter;
+    private final Counter toggleRetryCounter;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxReplyDepth;
+    private final int maxRepliesPerMessage;
+    private final int maxLikeBatchSize;
+    public MessageService(MessageRepository messageRepository, ReplyRepository replyRepository, LikeRepository likeRepository,
+                          ActivityEventRepository activityEventRepository,
+                          LikeCounterBuffer likeCounterBuffer, FeedCache feedCache, FeedEventBroadcaster feedEventBroadcaster, SearchService searchService,
+                          HotMessageService hotMessageService,
+                          PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                          @Value("${liuyan.feed.page-size:20}") int defaultPageSize,
+                          @Value("${liuyan.feed.max-page-size:100}") int maxPageSize,
+                          @Value("${liuyan.feed.max-reply-depth:3}") int maxReplyDepth,
+                          @Value("${liuyan.feed.max-replies-per-message:50}") int maxRepliesPerMessage,
+                          @Value("${liuyan.likes.batch.max-size:500}") int maxLikeBatchSize) {
         this.messageRepository = messageRepository;
         this.replyRepository = replyRepository;
         this.likeRepository = likeRepository;
+        this.activityEventRepository = activityEventRepository;
+        this.likeCounterBuffer = likeCounterBuffer;
+        this.feedCache = feedCache;
+        this.feedEventBroadcaster = feedEventBroadcaster;
+        this.searchService = searchService;
+        this.hotMessageService = hotMessageService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.likedCounter = Counter.builder("likes.toggles").tag("result", "liked").register(meterRegistry);
+        this.unlikedCounter = Counter.builder("likes.toggles").tag("result", "unliked").register(meterRegistry);
+        this.toggleRetryCounter = Counter.builder("likes.toggle.retries").description("Toggles retried after a unique-constraint race").register(meterRegistry);
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        if (maxReplyDepth * Reply.PATH_SEGMENT_LENGTH > Reply.PATH_MAX_LENGTH) {
+            throw new IllegalStateException("liuyan.feed.max-reply-depth=" + maxReplyDepth + " needs reply paths longer than "
+                    + Reply.PATH_MAX_LENGTH + " characters; at most " + Reply.PATH_MAX_LENGTH / Reply.PATH_SEGMENT_LENGTH + " levels fit.");
+        }
+        this.maxReplyDepth = maxReplyDepth;
+        this.maxRepliesPerMessage = maxRepliesPerMessage;
+        this.maxLikeBatchSize = maxLikeBatchSize;
+    }
+    public FeedPage getFeed(String cursor, Integer limit) {
+        return getFeedSnapshot(cursor, limit).page();
+    }
+    public FeedSnapshot getFeedSnapshot(String cursor, Integer limit) {
+        int pageSize = Math.min(Math.max(limit == null ? defaultPageSize : limit, 1), maxPageSize);
+        FeedCursor feedCursor = FeedCursor.decode(cursor).orElse(null);
+        // Cache hits are served without opening a transaction or touching the connection pool.
+        return feedCache.get(new FeedCache.Key(feedCursor == null ? null : cursor, pageSize),
+                () -> readOnlyTransaction.execute(status -> loadFeed(feedCursor, pageSize)));
+    }
+    private FeedPage loadFeed(FeedCursor cursor, int pageSize) {
+        // Fetch one extra row to learn whether another page follows without a count query.
+        PageRequest page = PageRequest.of(0, pageSize + 1);
+        List<FeedRow> messages = cursor != null
+                ? messageRepository.findFeedPageBefore(cursor.ts(), cursor.id(), page)
+                : messageRepository.findFeedPage(page);
+        boolean hasMore = messages.size() > pageSize;
+        if (hasMore) messages = messages.subList(0, pageSize);
+        if (messages.isEmpty()) return new FeedPage(List.of(), null);
+        // The page's replies come back in one query, capped per message so one huge thread cannot blow up the page.
+        // One row past the cap is fetched only to flag the message; the rest of a thread is served by /replies/{id}/thread.
+        List<ReplyRow> rows = replyRepository.findRowsByMessageIds(messages.stream().map(FeedRow::id).toList(), maxReplyDepth, maxRepliesPerMessage + 1);
+        Set<UUID> truncated = new HashSet<>();
+        List<ReplyRow> kept = new ArrayList<>(rows.size());
+        Map<UUID, Integer> perMessage = new HashMap<>();
+        for (ReplyRow row : rows) {
+            if (perMessage.merge(row.messageId(), 1, Integer::sum) > maxRepliesPerMessage) truncated.add(row.messageId());
+            else kept.add(row);
+        }
+        Map<UUID, List<ReplyView>> repliesByMessage = buildReplyTrees(kept);
+        List<MessageView> items = messages.stream()
+                .map(m -> new MessageView(m.id(), m.userId(), m.phoneMasked(), m.text(), m.ts(),
+                        m.likes() + (int) likeCounterBuffer.pending(LikeCounterBuffer.Target.MESSAGE, m.id()), m.replyCount(),
+                        repliesByMessage.getOrDefault(m.id(), List.of()), truncated.contains(m.id())))
+                .toList();
+        FeedRow last = messages.get(messages.size() - 1);
+        return new FeedPage(items, hasMore ? new FeedCursor(last.ts(), last.id()).encode() : null);
+    }
+    private Map<UUID, List<ReplyView>> buildReplyTrees(List<ReplyRow> rows) {
+        Map<UUID, ReplyView> viewsById = new HashMap<>();
+        Map<UUID, List<ReplyView>> roots = new HashMap<>();
+        // Rows arrive in path order, so each parent is seen before its children and siblings are appended in display order.
+        for (ReplyRow row : rows) {
+            ReplyView view = new ReplyView(row.id(), row.userId(), row.phoneMasked(), row.text(), row.ts(),
+                    row.likes() + (int) likeCounterBuffer.pending(LikeCounterBuffer.Target.REPLY, row.id()), new ArrayList<>());
+            if (row.parentReplyId() == null) {
+                roots.computeIfAbsent(row.messageId(), k -> new ArrayList<>()).add(view);
+            } else {
+                ReplyView parent = viewsById.get(row.parentReplyId());
+                if (parent == null) continue; // Parent belongs to another message; the row is unreachable.
+                parent.replies().add(view);
+            }
+            viewsById.put(row.id(), view);
+        }
+        return roots;
     }
-    public List<Message> getAllMessages() {
-        // This is a simplified fetch. A real implementation would need to handle
-        // the N+1 problem when fetching nested replies.
-        return messageRepository.findAll();
+    public Optional<ReplyView> getReplyThread(UUID replyId) {
+        return readOnlyTransaction.execute(status -> replyRepository.findById(replyId)
+                .filter(reply -> reply.getDepth() <= maxReplyDepth)
+                .map(reply -> {
+                    // The whole subtree is one prefix range on the path index, and the requested reply sorts first.
+                    List<ReplyRow> rows = new ArrayList<>(replyRepository.findSubtreeRows(reply.getMessage().getId(), reply.getPath(),
+                            Reply.subtreeUpperBound(reply.getPath()), maxReplyDepth));
+                    ReplyRow top = rows.get(0);
+                    rows.set(0, new ReplyRow(top.id(), top.messageId(), null, top.userId(), top.phoneMasked(), top.text(), top.ts(), top.likes(), top.depth()));
+                    return buildReplyTrees(rows).get(top.messageId()).get(0);
+                }));
     }
     @Transactional
     public Message createMessage(String text, String userId, String phoneMasked) {
-        Message message = new Message(null, userId, phoneMasked, text, Instant.now(), 0, null, null);
-        return messageRepository.save(message);
+        Message message = messageRepository.save(new Message(null, userId, phoneMasked, text, Instant.now(), 0, 0, null, null));
+        // Activity is logged in the same transaction so the digest rollups never see a write that rolled back.
+        activityEventRepository.save(new ActivityEvent(null, ActivityEvent.Kind.MESSAGE, message.getId(), message.getTs()));
+        afterCommit(() -> {
+            feedCache.invalidateFirstPages();
+            searchService.indexMessage(message.getId(), text, message.getTs());
+            hotMessageService.onMessageCreated(message.getId(), userId, phoneMasked, text, message.getTs());
+            feedEventBroadcaster.publish("message.created", new MessageView(message.getId(), userId, phoneMasked, text, message.getTs(), 0, 0, List.of(), false));
+        });
+        return message;
     }
     @Transactional
     public Optional<Reply> createReply(UUID messageId, UUID parentReplyId, String text, String userId, String phoneMasked) {
-        // Depth check logic would be needed here.
         Message message = messageRepository.findById(messageId).orElse(null);
         if (message == null) return Optional.empty();
         Reply parentReply = (parentReplyId != null) ? replyRepository.findById(parentReplyId).orElse(null) : null;
-        Reply reply = new Reply(null, userId, phoneMasked, text, Instant.now(), 0, message, parentReply, null, null);
-        return Optional.of(replyRepository.save(reply));
+        if (parentReply != null) {
+            if (!parentReply.getMessage().getId().equals(messageId)) throw new IllegalArgumentException("Parent reply belongs to another message.");
+            // The stored depth makes the limit a field comparison instead of a walk up the parent chain.
+            if (parentReply.getDepth() >= maxReplyDepth) throw new IllegalArgumentException("Replies can be nested at most " + maxReplyDepth + " levels deep.");
+        }
+        Instant now = Instant.now();
+        Reply reply = replyRepository.save(new Reply(null, userId, phoneMasked, text, now, 0, message, parentReply,
+                Reply.childPath(parentReply, now), parentReply == null ? 1 : parentReply.getDepth() + 1, null, null));
+        messageRepository.incrementReplyCount(messageId);
+        activityEventRepository.save(new ActivityEvent(null, ActivityEvent.Kind.REPLY, messageId, now));
+        afterCommit(() -> {
+            feedCache.invalidateMessage(messageId);
+            searchService.indexReply(reply.getId(), messageId, text, reply.getTs());
+            hotMessageService.onReplyCreated(messageId, reply.getTs());
+            feedEventBroadcaster.publish("reply.created", new ReplyCreated(messageId, parentReply != null ? parentReply.getId() : null,
+                    new ReplyView(reply.getId(), userId, phoneMasked, text, reply.getTs(), 0, List.of())));
+        });
+        return Optional.of(reply);
     }
-    @Transactional
     public boolean toggleLike(String userId, UUID targetId, String type) {
+        // Two concurrent first-likes by one user collide on the unique constraint; the loser retries and sees the winner's row.
+        for (int attempt = 1; ; attempt++) {
+            try {
+                boolean liked = Boolean.TRUE.equals(writeTransaction.execute(status -> toggleLikeOnce(userId, targetId, type)));
+                (liked ? likedCounter : unlikedCounter).increment();
+                return liked;
+            } catch (DataIntegrityViolationException e) {
+                if (attempt >= MAX_TOGGLE_ATTEMPTS) throw e;
+                toggleRetryCounter.increment();
+            }
+        }
+    }
+    private boolean toggleLikeOnce(String userId, UUID targetId, String type) {
+        // The unique (user_id, target) constraints decide idempotency; the counter only moves once the row change commits.
         if ("message".equals(type)) {
-            Optional<Like> existingLike = likeRepository.findByUserIdAndMessageId(userId, targetId);
-            Message message = messageRepository.findById(targetId).orElseThrow();
-            if (existingLike.isPresent()) {
-                likeRepository.delete(existingLike.get());
-                message.setLikes(message.getLikes() - 1);
-                messageRepository.save(message);
+            if (!messageRepository.existsById(targetId)) throw new NoSuchElementException("Message not found: " + targetId);
+            if (likeRepository.deleteMessageLike(userId, targetId) > 0) {
+                logActivity(ActivityEvent.Kind.UNLIKE, targetId);
+                afterCommit(() -> onLikeChanged(LikeCounterBuffer.Target.MESSAGE, targetId, targetId, -1));
+                return false; // Unliked
+            }
+            likeRepository.saveAndFlush(new Like(null, userId, Instant.now(), messageRepository.getReferenceById(targetId), null));
+            logActivity(ActivityEvent.Kind.LIKE, targetId);
+            afterCommit(() -> onLikeChanged(LikeCounterBuffer.Target.MESSAGE, targetId, targetId, 1));
+            return true; // Liked
+        }
+        if ("reply".equals(type)) {
+            UUID messageId = replyRepository.findMessageIdById(targetId)
+                    .orElseThrow(() -> new NoSuchElementException("Reply not found: " + targetId));
+            if (likeRepository.deleteReplyLike(userId, targetId) > 0) {
+                logActivity(ActivityEvent.Kind.UNLIKE, messageId);
+                afterCommit(() -> onLikeChanged(LikeCounterBuffer.Target.REPLY, targetId, messageId, -1));
                 return false; // Unliked
-            } else {
-                Like newLike = new Like(null, userId, Instant.now(), message, null);
-                likeRepository.save(newLike);
-                message.setLikes(message.getLikes() + 1);
-                messageRepository.save(message);
-                return true; // Liked
             }
+            likeRepository.saveAndFlush(new Like(null, userId, Instant.now(), null, replyRepository.getReferenceById(targetId)));
+            logActivity(ActivityEvent.Kind.LIKE, messageId);
+            afterCommit(() -> onLikeChanged(LikeCounterBuffer.Target.REPLY, targetId, messageId, 1));
+            return true; // Liked
         }
-        // Similar logic for "reply"
         return false;
     }
+    public List<LikeState> toggleLikes(String userId, List<LikeToggle> toggles) {
+        if (toggles.size() > maxLikeBatchSize) throw new IllegalArgumentException("At most " + maxLikeBatchSize + " toggles per batch.");
+        // An even number of flips on one target cancels out, so only the parity per target reaches the database.
+        Map<LikeToggle, Integer> flips = new LinkedHashMap<>();
+        for (LikeToggle toggle : toggles) {
+            if (toggle.targetId() == null || !("message".equals(toggle.type()) || "reply".equals(toggle.type()))) {
+                throw new IllegalArgumentException("Invalid like target: " + toggle);
+            }
+            flips.merge(toggle, 1, Integer::sum);
+        }
+        if (flips.isEmpty()) return List.of();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return writeTransaction.execute(status -> toggleLikesOnce(userId, flips));
+            } catch (DataIntegrityViolationException e) {
+                if (attempt >= MAX_TOGGLE_ATTEMPTS) throw e;
+                toggleRetryCounter.increment();
+            }
+        }
+    }
+    private List<LikeState> toggleLikesOnce(String userId, Map<LikeToggle, Integer> flips) {
+        Set<UUID> messageIds = new HashSet<>();
+        Set<UUID> replyIds = new HashSet<>();
+        flips.keySet().forEach(t -> ("message".equals(t.type()) ? messageIds : replyIds).add(t.targetId()));
+        // Existence and current state for the whole batch are read with one IN query per table.
+        Set<UUID> existingMessages = messageIds.isEmpty() ? Set.of() : new HashSet<>(messageRepository.findExistingIds(messageIds));
+        Map<UUID, UUID> replyMessages = new HashMap<>();
+        if (!replyIds.isEmpty()) {
+            for (Object[] row : replyRepository.findMessageIdsByIds(replyIds)) replyMessages.put((UUID) row[0], (UUID) row[1]);
+        }
+        Set<UUID> likedMessages = messageIds.isEmpty() ? Set.of() : new HashSet<>(likeRepository.findLikedMessageIds(userId, messageIds));
+        Set<UUID> likedReplies = replyIds.isEmpty() ? Set.of() : new HashSet<>(likeRepository.findLikedReplyIds(userId, replyIds));
+        List<LikeState> states = new ArrayList<>();
+        List<Like> inserts = new ArrayList<>();
+        int unliked = 0;
+        List<Runnable> changes = new ArrayList<>();
+        List<ActivityEvent> activity = new ArrayList<>();
+        Instant now = Instant.now();
+        for (Map.Entry<LikeToggle, Integer> entry : flips.entrySet()) {
+            UUID targetId = entry.getKey().targetId();
+            boolean isMessage = "message".equals(entry.getKey().type());
+            UUID messageId = isMessage ? (existingMessages.contains(targetId) ? targetId : null) : replyMessages.get(targetId);
+            if (messageId == null) continue; // Unknown targets are left out of the result.
+            boolean liked = (isMessage ? likedMessages : likedReplies).contains(targetId);
+            if (entry.getValue() % 2 == 1) {
+                LikeCounterBuffer.Target target = isMessage ? LikeCounterBuffer.Target.MESSAGE : LikeCounterBuffer.Target.REPLY;
+                // Unlikes delete one row each so the -1 is only queued for a row this transaction removed, as in toggleLikeOnce;
+                // a like that disappeared since the read above turns the flip into a like.
+                if (liked && (isMessage ? likeRepository.deleteMessageLike(userId, targetId) : likeRepository.deleteReplyLike(userId, targetId)) > 0) {
+                    unliked++;
+                    activity.add(new ActivityEvent(null, ActivityEvent.Kind.UNLIKE, messageId, now));
+                    changes.add(() -> onLikeChanged(target, targetId, messageId, -1));
+                    liked = false;
+                } else {
+                    inserts.add(isMessage
+                            ? new Like(null, userId, now, messageRepository.getReferenceById(targetId), null)
+                            : new Like(null, userId, now, null, replyRepository.getReferenceById(targetId)));
+                    activity.add(new ActivityEvent(null, ActivityEvent.Kind.LIKE, messageId, now));
+                    changes.add(() -> onLikeChanged(target, targetId, messageId, 1));
+                    liked = true;
+                }
+            }
+            states.add(new LikeState(targetId, entry.getKey().type(), liked));
+        }
+        // Inserts go out as JDBC batches (hibernate.jdbc.batch_size) and are flushed here so constraint races surface inside the retry loop.
+        if (!inserts.isEmpty()) likeRepository.saveAllAndFlush(inserts);
+        activityEventRepository.saveAll(activity);
+        int likedCount = inserts.size();
+        int unlikedCount = unliked;
+        afterCommit(() -> {
+            changes.forEach(Runnable::run);
+            likedCounter.increment(likedCount);
+            unlikedCounter.increment(unlikedCount);
+        });
+        return states;
+    }
+    private void logActivity(ActivityEvent.Kind kind, UUID messageId) {
+        activityEventRepository.save(new ActivityEvent(null, kind, messageId, Instant.now()));
+    }
+    private void onLikeChanged(LikeCounterBuffer.Target target, UUID targetId, UUID messageId, int delta) {
+        likeCounterBuffer.add(target, targetId, delta);
+        feedCache.invalidateMessage(messageId);
+        if (target == LikeCounterBuffer.Target.MESSAGE) hotMessageService.onMessageLiked(messageId, delta);
+        feedEventBroadcaster.publish("like.changed", new LikeDelta(targetId, target == LikeCounterBuffer.Target.MESSAGE ? "message" : "reply", delta));
+    }
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 }
\ No newline at end of file
@@ -0,0 +1,7 @@
+package com.liuyansh.service;
+import java.time.Duration;
+public interface OtpStore {
+    void save(String phone, String code, Duration ttl);
+    // Counts the attempt, and consumes the code on a match; a code dies after too many wrong guesses.
+    boolean verifyAndConsume(String phone, String code);
+}
@@ -0,0 +1,7 @@
+package com.liuyansh.service;
+import java.time.Duration;
+public interface RateLimiter {
+    // Sliding window: if fewer than limit hits were recorded for key within window, records this one and returns
+    // Duration.ZERO; otherwise returns how long until the oldest counted hit leaves the window.
+    Duration tryAcquire(String key, int limit, Duration window);
+}
@@ -0,0 +1,237 @@
+package com.liuyansh.service;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+// Append-only inverted index: documents get dense ids in insertion order, so every postings list stays sorted
+// without re-sorting. Document columns live in primitive arrays to keep the per-document overhead small.
+final class SearchIndex {
+    static final byte MESSAGE = 0;
+    static final byte REPLY = 1;
+    record Hit(UUID id, byte type, UUID messageId, Instant ts, float score) {}
+    record Result(int total, List<Hit> hits) {}
+    private static final int MAGIC = 0x4C59_4958; // "LYIX"
+    private static final int VERSION = 1;
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final class Postings {
+        int[] docs = new int[2];
+        int[] freqs = new int[2];
+        int size;
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size++] = freq;
+        }
+    }
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<UUID, Integer> docIds = new HashMap<>();
+    private long[] idHigh = new long[1024];
+    private long[] idLow = new long[1024];
+    private long[] messageHigh = new long[1024];
+    private long[] messageLow = new long[1024];
+    private long[] tsMillis = new long[1024];
+    private int[] lengths = new int[1024];
+    private byte[] types = new byte[1024];
+    private int docCount;
+    private long totalLength;
+    private long maxTsMillis = Long.MIN_VALUE;
+    boolean add(UUID id, byte type, UUID messageId, Instant ts, String text) {
+        Map<String, Integer> freqs = new HashMap<>();
+        for (String token : SearchTokenizer.tokenize(text, false)) freqs.merge(token, 1, Integer::sum);
+        lock.writeLock().lock();
+        try {
+            if (docIds.containsKey(id)) return false;
+            int doc = appendDoc(id, type, messageId, ts == null ? 0 : ts.toEpochMilli(), freqs.values().stream().mapToInt(Integer::intValue).sum());
+            freqs.forEach((token, freq) -> postings.computeIfAbsent(token, k -> new Postings()).add(doc, freq));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    // BM25 over the query's distinct terms; documents matching more of the terms rank ahead of partial matches.
+    Result search(String query, int offset, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(SearchTokenizer.tokenize(query, true)));
+        if (terms.isEmpty()) return new Result(0, List.of());
+        lock.readLock().lock();
+        try {
+            if (docCount == 0) return new Result(0, List.of());
+            float avgLength = (float) totalLength / docCount;
+            Map<Integer, float[]> scores = new HashMap<>(); // doc -> [score, matched terms]
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) continue;
+                float idf = (float) Math.log(1 + (docCount - list.size + 0.5) / (list.size + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int doc = list.docs[i];
+                    int freq = list.freqs[i];
+                    float norm = freq + K1 * (1 - B + B * lengths[doc] / avgLength);
+                    float[] score = scores.computeIfAbsent(doc, k -> new float[2]);
+                    score[0] += idf * freq * (K1 + 1) / norm;
+                    score[1]++;
+                }
+            }
+            List<Map.Entry<Integer, float[]>> ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort((a, b) -> {
+                int byMatches = Float.compare(b.getValue()[1], a.getValue()[1]);
+                if (byMatches != 0) return byMatches;
+                int byScore = Float.compare(b.getValue()[0], a.getValue()[0]);
+                return byScore != 0 ? byScore : Integer.compare(b.getKey(), a.getKey()); // Newer first on ties
+            });
+            List<Hit> hits = new ArrayList<>();
+            for (int i = offset; i < Math.min(ranked.size(), offset + limit); i++) {
+                int doc = ranked.get(i).getKey();
+                float score = ranked.get(i).getValue()[0] * ranked.get(i).getValue()[1] / terms.size();
+                hits.add(new Hit(new UUID(idHigh[doc], idLow[doc]), types[doc], new UUID(messageHigh[doc], messageLow[doc]),
+                        Instant.ofEpochMilli(tsMillis[doc]), score));
+            }
+            return new Result(ranked.size(), hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    int size() {
+        lock.readLock().lock();
+        try {
+            return docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    Instant maxTs() {
+        lock.readLock().lock();
+        try {
+            return maxTsMillis == Long.MIN_VALUE ? null : Instant.ofEpochMilli(maxTsMillis);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    // Segment layout: header, document columns, then terms in sorted order with delta-encoded doc ids.
+    // Written to a sibling file and moved into place, so a crash never leaves a half-written segment behind.
+    void writeTo(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(docCount);
+            out.writeLong(totalLength);
+            for (int doc = 0; doc < docCount; doc++) {
+                out.writeLong(idHigh[doc]);
+                out.writeLong(idLow[doc]);
+                out.writeLong(messageHigh[doc]);
+                out.writeLong(messageLow[doc]);
+                out.writeLong(tsMillis[doc]);
+                out.writeInt(lengths[doc]);
+                out.writeByte(types[doc]);
+            }
+            Map<String, Postings> sorted = new TreeMap<>(postings);
+            out.writeInt(sorted.size());
+            for (Map.Entry<String, Postings> entry : sorted.entrySet()) {
+                Postings list = entry.getValue();
+                out.writeUTF(entry.getKey());
+                writeVarInt(out, list.size);
+                int previous = 0;
+                for (int i = 0; i < list.size; i++) {
+                    writeVarInt(out, list.docs[i] - previous);
+                    writeVarInt(out, list.freqs[i]);
+                    previous = list.docs[i];
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    static SearchIndex readFrom(Path file) throws IOException {
+        SearchIndex index = new SearchIndex();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Unsupported search segment " + file);
+            int docs = in.readInt();
+            in.readLong(); // Total length, re-derived from the documents below
+            for (int doc = 0; doc < docs; doc++) {
+                UUID id = new UUID(in.readLong(), in.readLong());
+                UUID messageId = new UUID(in.readLong(), in.readLong());
+                long ts = in.readLong();
+                int length = in.readInt();
+                byte type = in.readByte();
+                index.appendDoc(id, type, messageId, ts, length);
+            }
+            int terms = in.readInt();
+            for (int t = 0; t < terms; t++) {
+                String term = in.readUTF();
+                int size = readVarInt(in);
+                Postings list = new Postings();
+                list.docs = new int[Math.max(size, 2)];
+                list.freqs = new int[Math.max(size, 2)];
+                int doc = 0;
+                for (int i = 0; i < size; i++) {
+                    doc += readVarInt(in);
+                    list.docs[i] = doc;
+                    list.freqs[i] = readVarInt(in);
+                }
+                list.size = size;
+                index.postings.put(term, list);
+            }
+        }
+        return index;
+    }
+    private int appendDoc(UUID id, byte type, UUID messageId, long ts, int length) {
+        if (docCount == types.length) {
+            int capacity = docCount * 2;
+            idHigh = Arrays.copyOf(idHigh, capacity);
+            idLow = Arrays.copyOf(idLow, capacity);
+            messageHigh = Arrays.copyOf(messageHigh, capacity);
+            messageLow = Arrays.copyOf(messageLow, capacity);
+            tsMillis = Arrays.copyOf(tsMillis, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            types = Arrays.copyOf(types, capacity);
+        }
+        int doc = docCount++;
+        idHigh[doc] = id.getMostSignificantBits();
+        idLow[doc] = id.getLeastSignificantBits();
+        messageHigh[doc] = messageId.getMostSignificantBits();
+        messageLow[doc] = messageId.getLeastSignificantBits();
+        tsMillis[doc] = ts;
+        lengths[doc] = length;
+        types[doc] = type;
+        totalLength += length;
+        maxTsMillis = Math.max(maxTsMillis, ts);
+        docIds.put(id, doc);
+        return doc;
+    }
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.liuyansh.service;
+import com.liuyansh.dto.SearchPage;
+import com.liuyansh.dto.SearchResult;
+import com.liuyansh.entity.Message;
+import com.liuyansh.entity.Reply;
+import com.liuyansh.repository.MessageRepository;
+import com.liuyansh.repository.ReplyRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+@Service
+public class SearchService {
+    private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
+    // Rows can commit with a ts slightly older than the newest indexed one, so startup catch-up re-reads this margin.
+    private static final Duration CATCH_UP_OVERLAP = Duration.ofMinutes(5);
+    private final MessageRepository messageRepository;
+    private final ReplyRepository replyRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Timer queryTimer;
+    private final Path segmentFile;
+    private final int maxPageSize;
+    private final Object rebuildLock = new Object();
+    private volatile SearchIndex index = new SearchIndex();
+    private volatile boolean loaded; // Until a load or rebuild completes, searches see the empty index and nothing is saved
+    private List<Consumer<SearchIndex>> updatesDuringRebuild; // Guarded by rebuildLock; non-null while a rebuild runs
+    public SearchService(MessageRepository messageRepository, ReplyRepository replyRepository, DataSource dataSource,
+                         PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                         @Value("${liuyan.search.segment-path:${java.io.tmpdir}/liuyan-search.seg}") Path segmentFile,
+                         @Value("${liuyan.search.max-page-size:50}") int maxPageSize) {
+        this.messageRepository = messageRepository;
+        this.replyRepository = replyRepository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(1000);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.queryTimer = Timer.builder("search.queries").register(meterRegistry);
+        Gauge.builder("search.index.documents", this, s -> s.index.size()).register(meterRegistry);
+        this.segmentFile = segmentFile;
+        this.maxPageSize = maxPageSize;
+    }
+    // A saved segment makes startup a file read plus a short catch-up instead of a full scan of both tables.
+    // Runs off the startup thread so readiness does not wait on it.
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (Files.exists(segmentFile)) {
+            try {
+                SearchIndex segment = SearchIndex.readFrom(segmentFile);
+                Instant since = segment.maxTs() == null ? null : segment.maxTs().minus(CATCH_UP_OVERLAP);
+                synchronized (rebuildLock) {
+                    index = segment;
+                }
+                readOnlyTransaction.executeWithoutResult(status -> scan(since, segment::add));
+                loaded = true;
+                logger.info("Loaded search segment with {} documents", segment.size());
+                return;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Discarding unreadable search segment {}", segmentFile, e);
+            }
+        }
+        rebuild();
+    }
+    public void indexMessage(UUID id, String text, Instant ts) {
+        apply(target -> target.add(id, SearchIndex.MESSAGE, id, ts, text));
+    }
+    public void indexReply(UUID id, UUID messageId, String text, Instant ts) {
+        apply(target -> target.add(id, SearchIndex.REPLY, messageId, ts, text));
+    }
+    @Scheduled(initialDelayString = "${liuyan.search.rebuild-interval-ms:21600000}", fixedDelayString = "${liuyan.search.rebuild-interval-ms:21600000}")
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            if (updatesDuringRebuild != null) return;
+            updatesDuringRebuild = new ArrayList<>();
+        }
+        try {
+            SearchIndex fresh = new SearchIndex();
+            readOnlyTransaction.executeWithoutResult(status -> scan(null, fresh::add));
+            synchronized (rebuildLock) {
+                // Writes that landed while the tables were scanned are replayed; add() skips ids the scan already saw.
+                updatesDuringRebuild.forEach(update -> update.accept(fresh));
+                index = fresh;
+            }
+            loaded = true;
+            logger.info("Rebuilt search index with {} documents", fresh.size());
+            save();
+        } finally {
+            synchronized (rebuildLock) {
+                updatesDuringRebuild = null;
+            }
+        }
+    }
+    @PreDestroy
+    public void save() {
+        if (!loaded) return;
+        try {
+            Files.createDirectories(segmentFile.toAbsolutePath().getParent());
+            index.writeTo(segmentFile);
+        } catch (IOException e) {
+            logger.warn("Could not write search segment {}", segmentFile, e);
+        }
+    }
+    public SearchPage search(String query, int page, int size) {
+        int limit = Math.min(Math.max(size, 1), maxPageSize);
+        int offset = Math.max(page, 0) * limit;
+        return queryTimer.record(() -> {
+            SearchIndex.Result result = index.search(query, offset, limit);
+            return new SearchPage(result.total(), Math.max(page, 0), limit, hydrate(result.hits()));
+        });
+    }
+    private List<SearchResult> hydrate(List<SearchIndex.Hit> hits) {
+        if (hits.isEmpty()) return List.of();
+        return readOnlyTransaction.execute(status -> {
+            Map<UUID, Message> messages = messageRepository.findAllById(ids(hits, SearchIndex.MESSAGE)).stream()
+                    .collect(Collectors.toMap(Message::getId, Function.identity()));
+            Map<UUID, Reply> replies = replyRepository.findAllById(ids(hits, SearchIndex.REPLY)).stream()
+                    .collect(Collectors.toMap(Reply::getId, Function.identity()));
+            List<SearchResult> items = new ArrayList<>(hits.size());
+            // Hits whose row is gone (e.g. after a snapshot restore) are dropped until the next rebuild.
+            for (SearchIndex.Hit hit : hits) {
+                if (hit.type() == SearchIndex.MESSAGE) {
+                    Message m = messages.get(hit.id());
+                    if (m != null) items.add(new SearchResult("message", m.getId(), m.getId(), m.getPhoneMasked(), m.getText(), m.getTs(), hit.score()));
+                } else {
+                    Reply r = replies.get(hit.id());
+                    if (r != null) items.add(new SearchResult("reply", r.getId(), hit.messageId(), r.getPhoneMasked(), r.getText(), r.getTs(), hit.score()));
+                }
+            }
+            return items;
+        });
+    }
+    private void apply(Consumer<SearchIndex> update) {
+        synchronized (rebuildLock) {
+            update.accept(index);
+            if (updatesDuringRebuild != null) updatesDuringRebuild.add(update);
+        }
+    }
+    private interface DocumentSink {
+        boolean add(UUID id, byte type, UUID messageId, Instant ts, String text);
+    }
+    private void scan(Instant since, DocumentSink sink) {
+        String filter = since == null ? "" : " WHERE ts >= ?";
+        Object[] args = since == null ? new Object[0] : new Object[]{OffsetDateTime.ofInstant(since, ZoneOffset.UTC)};
+        jdbcTemplate.query("SELECT id, text, ts FROM messages" + filter, (RowCallbackHandler) rs -> {
+            UUID id = rs.getObject(1, UUID.class);
+            sink.add(id, SearchIndex.MESSAGE, id, instant(rs.getObject(3, OffsetDateTime.class)), rs.getString(2));
+        }, args);
+        jdbcTemplate.query("SELECT id, message_id, text, ts FROM replies" + filter, (RowCallbackHandler) rs ->
+                sink.add(rs.getObject(1, UUID.class), SearchIndex.REPLY, rs.getObject(2, UUID.class),
+                        instant(rs.getObject(4, OffsetDateTime.class)), rs.getString(3)), args);
+    }
+    private static List<UUID> ids(List<SearchIndex.Hit> hits, byte type) {
+        return hits.stream().filter(h -> h.type() == type).map(SearchIndex.Hit::id).toList();
+    }
+    private static Instant instant(OffsetDateTime ts) {
+        return ts == null ? null : ts.toInstant();
+    }
+}
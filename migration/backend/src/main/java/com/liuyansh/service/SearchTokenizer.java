@@ -0,0 +1,53 @@
+package com.liuyansh.service;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+// Latin-script and digit runs become lower-cased words. CJK runs have no word boundaries, so they are indexed as
+// overlapping character bigrams plus single characters; queries use the bigrams and fall back to a single character.
+final class SearchTokenizer {
+    private SearchTokenizer() {
+    }
+    static List<String> tokenize(String text, boolean query) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) return tokens;
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            int cp = normalized.codePointAt(i);
+            if (isCjk(cp)) {
+                int start = i;
+                while (i < length && isCjk(normalized.codePointAt(i))) i += Character.charCount(normalized.codePointAt(i));
+                addCjkRun(normalized.substring(start, i), query, tokens);
+            } else if (Character.isLetterOrDigit(cp)) {
+                int start = i;
+                while (i < length) {
+                    int c = normalized.codePointAt(i);
+                    if (!Character.isLetterOrDigit(c) || isCjk(c)) break;
+                    i += Character.charCount(c);
+                }
+                tokens.add(normalized.substring(start, i));
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+        return tokens;
+    }
+    private static void addCjkRun(String run, boolean query, List<String> tokens) {
+        int[] cps = run.codePoints().toArray();
+        if (cps.length == 1) {
+            tokens.add(run);
+            return;
+        }
+        for (int j = 0; j < cps.length; j++) {
+            if (!query) tokens.add(new String(cps, j, 1));
+            if (j + 1 < cps.length) tokens.add(new String(cps, j, 2));
+        }
+    }
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,109 @@
+package com.liuyansh.service;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+// Reads the SnapshotWriter layout through a sliding memory-mapped window, inflating one block at a time.
+final class SnapshotReader implements Closeable {
+    private static final long WINDOW_BYTES = 256L * 1024 * 1024;
+    private final FileChannel channel;
+    private final long size;
+    private final Inflater inflater = new Inflater();
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private ByteBuffer block = ByteBuffer.allocate(0);
+    private int rowsLeft;
+    SnapshotReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        byte[] magic = new byte[SnapshotWriter.MAGIC.length];
+        ByteBuffer header = read(magic.length + 1);
+        header.get(magic);
+        if (!Arrays.equals(magic, SnapshotWriter.MAGIC)) throw new IOException("Not a board snapshot");
+        byte version = header.get();
+        if (version != SnapshotWriter.VERSION) throw new IOException("Unsupported snapshot version " + version);
+    }
+    SnapshotSection nextSection() throws IOException {
+        return SnapshotSection.of(read(1).get());
+    }
+    // Moves to the next row of the current section; false once the section's closing block header is reached.
+    boolean nextRow() throws IOException {
+        if (rowsLeft > 0) {
+            rowsLeft--;
+            return true;
+        }
+        ByteBuffer header = read(SnapshotWriter.BLOCK_HEADER_BYTES);
+        int rows = header.getInt();
+        int rawLength = header.getInt();
+        int compressedLength = header.getInt();
+        if (rows == 0) return false;
+        if (block.capacity() < rawLength) block = ByteBuffer.allocate(rawLength);
+        block.clear().limit(rawLength);
+        inflater.reset();
+        inflater.setInput(read(compressedLength));
+        try {
+            while (block.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(block) == 0 && inflater.needsInput()) throw new IOException("Truncated snapshot block");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt snapshot block", e);
+        }
+        block.flip();
+        rowsLeft = rows - 1;
+        return true;
+    }
+    UUID getUuid() {
+        return new UUID(block.getLong(), block.getLong());
+    }
+    UUID getNullableUuid() {
+        return block.get() == 0 ? null : getUuid();
+    }
+    int getInt() {
+        return block.getInt();
+    }
+    Instant getInstant() {
+        long micros = block.getLong();
+        return micros == Long.MIN_VALUE ? null : Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+    String getString() {
+        int length = getVarInt() - 1;
+        if (length < 0) return null;
+        String value = new String(block.array(), block.arrayOffset() + block.position(), length, StandardCharsets.UTF_8);
+        block.position(block.position() + length);
+        return value;
+    }
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+    private int getVarInt() {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = block.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+    // Returns a view of the next length bytes, remapping the window when they fall outside it.
+    private ByteBuffer read(int length) throws IOException {
+        if (position + length > size) throw new IOException("Truncated snapshot");
+        if (window == null || position < windowStart || position + length > windowStart + window.capacity()) {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(size - windowStart, Math.max(WINDOW_BYTES, length)));
+        }
+        ByteBuffer view = window.slice((int) (position - windowStart), length);
+        position += length;
+        return view;
+    }
+}
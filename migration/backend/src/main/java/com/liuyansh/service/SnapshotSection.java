@@ -0,0 +1,17 @@
+package com.liuyansh.service;
+enum SnapshotSection {
+    END(0), MESSAGES(1), REPLIES(2), LIKES(3);
+    private final byte tag;
+    SnapshotSection(int tag) {
+        this.tag = (byte) tag;
+    }
+    byte tag() {
+        return tag;
+    }
+    static SnapshotSection of(byte tag) {
+        for (SnapshotSection section : values()) {
+            if (section.tag == tag) return section;
+        }
+        throw new IllegalArgumentException("Unknown snapshot section " + tag);
+    }
+}
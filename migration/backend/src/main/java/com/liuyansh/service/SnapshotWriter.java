@@ -0,0 +1,119 @@
+package com.liuyansh.service;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.zip.Deflater;
+// Layout: magic, version, then per section a tag byte followed by blocks of
+// [int rows][int rawLength][int compressedLength][deflated rows], closed by an all-zero block header; tag 0 ends the file.
+final class SnapshotWriter implements Closeable {
+    static final byte[] MAGIC = {'L', 'Y', 'S', 'N', 'A', 'P'};
+    static final byte VERSION = 1;
+    static final int BLOCK_HEADER_BYTES = 12;
+    // Largest encoded row accepted; the block size must be at least this so any row fits a block on its own.
+    static final int MAX_ROW_BYTES = 64 * 1024;
+    private static final int INITIAL_ROW_BYTES = 4 * 1024;
+    private final FileChannel channel;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final ByteBuffer block;
+    private ByteBuffer row = ByteBuffer.allocate(INITIAL_ROW_BYTES);
+    private final ByteBuffer compressed;
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+    private int blockRows;
+    SnapshotWriter(Path path, int blockSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.block = ByteBuffer.allocate(blockSize);
+        // Deflate can expand incompressible input slightly; this bound covers it.
+        this.compressed = ByteBuffer.allocate(blockSize + (blockSize >> 3) + 64);
+        writeFully(ByteBuffer.allocate(MAGIC.length + 1).put(MAGIC).put(VERSION).flip());
+    }
+    void beginSection(SnapshotSection section) throws IOException {
+        writeFully(ByteBuffer.allocate(1).put(section.tag()).flip());
+    }
+    void endSection() throws IOException {
+        flushBlock();
+        header.clear().putInt(0).putInt(0).putInt(0).flip();
+        writeFully(header);
+    }
+    // Rows are encoded into a scratch buffer first so a row never straddles two blocks.
+    ByteBuffer startRow() {
+        return row.clear();
+    }
+    // Called when a row overflowed the scratch buffer; the caller encodes the row again into the returned, larger one.
+    ByteBuffer growRow() {
+        if (row.capacity() >= MAX_ROW_BYTES) throw new IllegalStateException("Snapshot row exceeds " + MAX_ROW_BYTES + " bytes");
+        row = ByteBuffer.allocate(Math.min(row.capacity() * 2, MAX_ROW_BYTES));
+        return row;
+    }
+    void endRow() throws IOException {
+        row.flip();
+        if (block.remaining() < row.remaining()) flushBlock();
+        block.put(row);
+        blockRows++;
+    }
+    long size() throws IOException {
+        return channel.position();
+    }
+    @Override
+    public void close() throws IOException {
+        try {
+            writeFully(ByteBuffer.allocate(1).put(SnapshotSection.END.tag()).flip());
+            channel.force(false);
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+    }
+    private void flushBlock() throws IOException {
+        if (blockRows == 0) return;
+        block.flip();
+        int rawLength = block.remaining();
+        deflater.reset();
+        deflater.setInput(block);
+        deflater.finish();
+        compressed.clear();
+        while (!deflater.finished()) deflater.deflate(compressed);
+        compressed.flip();
+        header.clear().putInt(blockRows).putInt(rawLength).putInt(compressed.remaining()).flip();
+        writeFully(header);
+        writeFully(compressed);
+        block.clear();
+        blockRows = 0;
+    }
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+    static void putUuid(ByteBuffer out, UUID id) {
+        out.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+    }
+    static void putNullableUuid(ByteBuffer out, UUID id) {
+        out.put((byte) (id == null ? 0 : 1));
+        if (id != null) putUuid(out, id);
+    }
+    // Microseconds match the TIMESTAMP(6) columns; Long.MIN_VALUE stands for null.
+    static void putInstant(ByteBuffer out, Instant ts) {
+        out.putLong(ts == null ? Long.MIN_VALUE : ts.getEpochSecond() * 1_000_000L + ts.getNano() / 1_000);
+    }
+    // Strings are a varint of (byte length + 1), 0 meaning null, followed by UTF-8 bytes.
+    static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            putVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarInt(out, bytes.length + 1);
+        out.put(bytes);
+    }
+    static void putVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+}
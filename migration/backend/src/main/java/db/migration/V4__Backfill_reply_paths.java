@@ -0,0 +1,56 @@
+package db.migration;
+import com.liuyansh.entity.Reply;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+public class V4__Backfill_reply_paths extends BaseJavaMigration {
+    private static final int BATCH_SIZE = 500;
+    private record Row(UUID id, UUID parentId, Instant ts) {}
+    private record Pending(Row row, String parentPath, int depth) {}
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        Map<UUID, List<Row>> childrenByParent = new HashMap<>();
+        List<Row> roots = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, parent_reply_id, ts FROM replies")) {
+            while (rs.next()) {
+                OffsetDateTime ts = rs.getObject(3, OffsetDateTime.class);
+                Row row = new Row(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class), ts == null ? Instant.EPOCH : ts.toInstant());
+                if (row.parentId() == null) roots.add(row);
+                else childrenByParent.computeIfAbsent(row.parentId(), k -> new ArrayList<>()).add(row);
+            }
+        }
+        try (PreparedStatement update = connection.prepareStatement("UPDATE replies SET path = ?, depth = ? WHERE id = ?")) {
+            // Walk each thread top-down so every parent's path exists before its children's are derived from it.
+            // The salt comes from the reply id, so re-running the backfill produces identical paths.
+            Deque<Pending> pending = new ArrayDeque<>();
+            for (Row root : roots) pending.push(new Pending(root, "", 1));
+            int batched = 0;
+            while (!pending.isEmpty()) {
+                Pending next = pending.pop();
+                Row row = next.row();
+                String path = next.parentPath() + Reply.pathSegment(row.ts(), (int) row.id().getLeastSignificantBits());
+                update.setString(1, path);
+                update.setInt(2, next.depth());
+                update.setObject(3, row.id());
+                update.addBatch();
+                if (++batched % BATCH_SIZE == 0) update.executeBatch();
+                for (Row child : childrenByParent.getOrDefault(row.id(), List.of())) pending.push(new Pending(child, path, next.depth() + 1));
+            }
+            update.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package db.migration;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+public class V7__Backfill_activity_rollups extends BaseJavaMigration {
+    private static final int BATCH_SIZE = 500;
+    private record MessageDay(LocalDate day, UUID messageId) {}
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        // Fold the existing rows into rollups once, so the first digest after the upgrade still sees its whole window.
+        Map<LocalDate, long[]> daily = new HashMap<>(); // [messages, replies, likes]
+        Map<MessageDay, long[]> perMessage = new HashMap<>(); // [replies, likes]
+        scan(connection, "SELECT id, ts FROM messages", (messageId, day) -> daily.computeIfAbsent(day, k -> new long[3])[0]++);
+        scan(connection, "SELECT message_id, ts FROM replies", (messageId, day) -> {
+            daily.computeIfAbsent(day, k -> new long[3])[1]++;
+            perMessage.computeIfAbsent(new MessageDay(day, messageId), k -> new long[2])[0]++;
+        });
+        scan(connection, "SELECT COALESCE(l.message_id, r.message_id), l.ts FROM likes l LEFT JOIN replies r ON r.id = l.reply_id", (messageId, day) -> {
+            daily.computeIfAbsent(day, k -> new long[3])[2]++;
+            perMessage.computeIfAbsent(new MessageDay(day, messageId), k -> new long[2])[1]++;
+        });
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO activity_daily_rollups (activity_day, messages, replies, likes) VALUES (?, ?, ?, ?)")) {
+            int batched = 0;
+            for (Map.Entry<LocalDate, long[]> entry : daily.entrySet()) {
+                insert.setObject(1, entry.getKey());
+                insert.setLong(2, entry.getValue()[0]);
+                insert.setLong(3, entry.getValue()[1]);
+                insert.setLong(4, entry.getValue()[2]);
+                insert.addBatch();
+                if (++batched % BATCH_SIZE == 0) insert.executeBatch();
+            }
+            insert.executeBatch();
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO activity_message_rollups (activity_day, message_id, replies, likes) VALUES (?, ?, ?, ?)")) {
+            int batched = 0;
+            for (Map.Entry<MessageDay, long[]> entry : perMessage.entrySet()) {
+                insert.setObject(1, entry.getKey().day());
+                insert.setObject(2, entry.getKey().messageId());
+                insert.setLong(3, entry.getValue()[0]);
+                insert.setLong(4, entry.getValue()[1]);
+                insert.addBatch();
+                if (++batched % BATCH_SIZE == 0) insert.executeBatch();
+            }
+            insert.executeBatch();
+        }
+        // Everything up to now is in the rollups; activity after the migration arrives through activity_events.
+        try (PreparedStatement update = connection.prepareStatement("UPDATE digest_checkpoints SET watermark = ?, updated_at = ? WHERE name = 'digest'")) {
+            Timestamp now = Timestamp.from(Instant.now());
+            update.setTimestamp(1, now);
+            update.setTimestamp(2, now);
+            update.executeUpdate();
+        }
+        copySendLogs(connection);
+    }
+    private interface RowHandler {
+        void accept(UUID messageId, LocalDate day);
+    }
+    private static void scan(Connection connection, String sql, RowHandler handler) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.setFetchSize(BATCH_SIZE);
+            try (ResultSet rs = statement.executeQuery(sql)) {
+                while (rs.next()) {
+                    UUID messageId = rs.getObject(1, UUID.class);
+                    OffsetDateTime ts = rs.getObject(2, OffsetDateTime.class);
+                    if (messageId == null || ts == null) continue;
+                    handler.accept(messageId, LocalDate.ofInstant(ts.toInstant(), ZoneOffset.UTC));
+                }
+            }
+        }
+    }
+    private static void copySendLogs(Connection connection) throws Exception {
+        // settings.send_logs held a JSON array, newest first; it moves into email_send_logs oldest first so ids follow time.
+        String json = null;
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT send_logs FROM settings WHERE id = 'app-settings'")) {
+            if (rs.next()) json = rs.getString(1);
+        }
+        if (json == null || json.isBlank()) return;
+        JsonNode logs = new ObjectMapper().readTree(json);
+        if (!logs.isArray()) return;
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO email_send_logs " +
+                "(ts, message_count, reply_count, like_count, status, response_snippet) VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int i = logs.size() - 1; i >= 0; i--) {
+                JsonNode log = logs.get(i);
+                insert.setTimestamp(1, Timestamp.from(Instant.ofEpochMilli(log.path("ts").asLong())));
+                insert.setLong(2, log.path("messageCount").asLong());
+                insert.setLong(3, log.path("replyCount").asLong());
+                insert.setLong(4, log.path("likeCount").asLong());
+                insert.setString(5, "success".equals(log.path("status").asText()) ? "success" : "failure");
+                String snippet = log.path("responseSnippet").asText("");
+                insert.setString(6, snippet.length() <= 512 ? snippet : snippet.substring(0, 512));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+}
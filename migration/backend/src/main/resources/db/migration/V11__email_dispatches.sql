@@ -0,0 +1,15 @@
+-- Email dispatch queue: one row per digest window, claimed by a worker through locked_until.
+CREATE TABLE email_dispatches (
+    id UUID NOT NULL PRIMARY KEY,
+    idempotency_key VARCHAR(255) NOT NULL UNIQUE,
+    status VARCHAR(16) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    sent_count BIGINT NOT NULL DEFAULT 0,
+    window_end TIMESTAMP(6) WITH TIME ZONE,
+    next_attempt_at TIMESTAMP(6) WITH TIME ZONE,
+    locked_until TIMESTAMP(6) WITH TIME ZONE,
+    last_error VARCHAR(1024),
+    created_at TIMESTAMP(6) WITH TIME ZONE,
+    updated_at TIMESTAMP(6) WITH TIME ZONE
+);
+CREATE INDEX idx_email_dispatches_status_next ON email_dispatches (status, next_attempt_at);
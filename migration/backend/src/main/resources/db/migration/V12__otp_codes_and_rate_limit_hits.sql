@@ -0,0 +1,15 @@
+-- OTP codes and rate-limit hits move out of process memory so every node sees the same state.
+CREATE TABLE otp_codes (
+    phone VARCHAR(255) NOT NULL PRIMARY KEY,
+    code VARCHAR(255) NOT NULL,
+    expires_at TIMESTAMP(6) WITH TIME ZONE,
+    attempts INTEGER NOT NULL DEFAULT 0
+);
+
+CREATE TABLE rate_limit_hits (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    limit_key VARCHAR(255) NOT NULL,
+    ts TIMESTAMP(6) WITH TIME ZONE,
+    expires_at TIMESTAMP(6) WITH TIME ZONE
+);
+CREATE INDEX idx_rate_limit_hits_key_ts ON rate_limit_hits (limit_key, ts);
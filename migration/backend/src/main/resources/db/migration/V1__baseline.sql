@@ -0,0 +1,47 @@
+-- Baseline: the schema as ddl-auto=update left it at the last release, and what baseline-version=1 adopts; later tables and
+-- columns belong in their own migrations. Kept to the SQL subset shared by H2 and PostgreSQL so one script serves both.
+CREATE TABLE messages (
+    id UUID NOT NULL PRIMARY KEY,
+    user_id VARCHAR(255),
+    phone_masked VARCHAR(255),
+    text VARCHAR(512),
+    ts TIMESTAMP(6) WITH TIME ZONE,
+    likes INTEGER NOT NULL DEFAULT 0
+);
+
+CREATE TABLE replies (
+    id UUID NOT NULL PRIMARY KEY,
+    user_id VARCHAR(255),
+    phone_masked VARCHAR(255),
+    text VARCHAR(512),
+    ts TIMESTAMP(6) WITH TIME ZONE,
+    likes INTEGER NOT NULL,
+    message_id UUID REFERENCES messages (id),
+    parent_reply_id UUID REFERENCES replies (id)
+);
+
+CREATE TABLE likes (
+    id UUID NOT NULL PRIMARY KEY,
+    user_id VARCHAR(255) NOT NULL,
+    ts TIMESTAMP(6) WITH TIME ZONE,
+    message_id UUID REFERENCES messages (id),
+    reply_id UUID REFERENCES replies (id),
+    CONSTRAINT uk_likes_user_message UNIQUE (user_id, message_id),
+    CONSTRAINT uk_likes_user_reply UNIQUE (user_id, reply_id)
+);
+
+CREATE TABLE settings (
+    id VARCHAR(255) NOT NULL PRIMARY KEY,
+    recipient VARCHAR(255),
+    provider VARCHAR(255),
+    api_url VARCHAR(255),
+    api_key VARCHAR(1024),
+    timezone VARCHAR(255),
+    last_sent_ts TIMESTAMP(6) WITH TIME ZONE,
+    send_logs TEXT
+);
+
+CREATE TABLE auth_users (
+    id UUID NOT NULL PRIMARY KEY,
+    phone VARCHAR(255) NOT NULL UNIQUE
+);
@@ -0,0 +1,12 @@
+-- Keyset feed paging walks (ts, id) newest first; the window counts and FK lookups get their own indexes.
+CREATE INDEX idx_messages_ts_id ON messages (ts DESC, id DESC);
+CREATE INDEX idx_replies_message_ts ON replies (message_id, ts);
+CREATE INDEX idx_replies_parent ON replies (parent_reply_id);
+CREATE INDEX idx_replies_ts ON replies (ts);
+CREATE INDEX idx_likes_message ON likes (message_id);
+CREATE INDEX idx_likes_reply ON likes (reply_id);
+CREATE INDEX idx_likes_ts ON likes (ts);
+
+-- Denormalized reply count so feed rows are served from messages alone.
+ALTER TABLE messages ADD COLUMN reply_count INTEGER NOT NULL DEFAULT 0;
+UPDATE messages SET reply_count = (SELECT COUNT(*) FROM replies r WHERE r.message_id = messages.id);
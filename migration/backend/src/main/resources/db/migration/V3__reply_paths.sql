@@ -0,0 +1,3 @@
+-- Materialized reply paths: filled for existing rows by V4 and maintained on insert afterwards.
+ALTER TABLE replies ADD COLUMN path VARCHAR(512);
+ALTER TABLE replies ADD COLUMN depth INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,4 @@
+ALTER TABLE replies ALTER COLUMN path SET NOT NULL;
+-- Threads are now read in path order, which supersedes the (message_id, ts) index.
+DROP INDEX idx_replies_message_ts;
+CREATE INDEX idx_replies_message_path ON replies (message_id, path);
@@ -0,0 +1,42 @@
+-- Append-only activity written by MessageService; rows are deleted once folded into the rollups.
+CREATE SEQUENCE activity_events_seq START WITH 1 INCREMENT BY 50;
+CREATE TABLE activity_events (
+    id BIGINT NOT NULL PRIMARY KEY,
+    kind VARCHAR(16) NOT NULL,
+    message_id UUID NOT NULL,
+    ts TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE TABLE activity_daily_rollups (
+    activity_day DATE NOT NULL PRIMARY KEY,
+    messages BIGINT NOT NULL DEFAULT 0,
+    replies BIGINT NOT NULL DEFAULT 0,
+    likes BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE activity_message_rollups (
+    activity_day DATE NOT NULL,
+    message_id UUID NOT NULL,
+    replies BIGINT NOT NULL DEFAULT 0,
+    likes BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (activity_day, message_id)
+);
+
+CREATE TABLE digest_checkpoints (
+    name VARCHAR(64) NOT NULL PRIMARY KEY,
+    last_event_id BIGINT NOT NULL DEFAULT 0,
+    watermark TIMESTAMP(6) WITH TIME ZONE,
+    updated_at TIMESTAMP(6) WITH TIME ZONE
+);
+INSERT INTO digest_checkpoints (name, last_event_id) VALUES ('digest', 0);
+
+CREATE TABLE email_send_logs (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    ts TIMESTAMP(6) WITH TIME ZONE,
+    message_count BIGINT NOT NULL DEFAULT 0,
+    reply_count BIGINT NOT NULL DEFAULT 0,
+    like_count BIGINT NOT NULL DEFAULT 0,
+    status VARCHAR(16) NOT NULL,
+    response_snippet VARCHAR(512)
+);
+CREATE INDEX idx_email_send_logs_ts ON email_send_logs (ts);
@@ -0,0 +1,2 @@
+-- Send history now lives in email_send_logs (copied over by V7).
+ALTER TABLE settings DROP COLUMN send_logs;
@@ -0,0 +1,3 @@
+-- Optimistic locking for Settings (@Version). Existing rows start at 0: a NULL version would make Spring Data take the row
+-- for a new entity and try to insert it.
+ALTER TABLE settings ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
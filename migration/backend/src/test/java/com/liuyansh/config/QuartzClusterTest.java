@@ -0,0 +1,77 @@
+package com.liuyansh.config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.DateBuilder;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.scheduling.quartz.SchedulerFactoryBean;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.assertj.core.api.Assertions.assertThat;
+// Two schedulers in one JVM, clustered on one H2 JDBC store created by the Flyway migration, configured as in application.properties.
+class QuartzClusterTest {
+    private static final Map<Long, AtomicInteger> FIRES = new ConcurrentHashMap<>();
+    private final List<SchedulerFactoryBean> nodes = new ArrayList<>();
+    public static class RecordingJob implements Job {
+        @Override
+        public void execute(JobExecutionContext context) {
+            FIRES.computeIfAbsent(context.getScheduledFireTime().getTime(), k -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+    @AfterEach
+    void shutDown() throws Exception {
+        for (SchedulerFactoryBean node : nodes) node.destroy();
+        FIRES.clear();
+    }
+    @Test
+    void emailTriggerFiresOncePerFireTimeAcrossTwoNodes() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:quartz-cluster;DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V10__quartz_tables.sql")).execute(dataSource);
+        nodes.add(startNode(dataSource, "node-1"));
+        nodes.add(startNode(dataSource, "node-2"));
+        Thread.sleep(8_000);
+        for (SchedulerFactoryBean node : nodes) node.getScheduler().standby();
+        assertThat(FIRES).hasSizeGreaterThanOrEqualTo(4);
+        assertThat(FIRES.values()).allSatisfy(count -> assertThat(count.get()).isEqualTo(1));
+    }
+    private static SchedulerFactoryBean startNode(DataSource dataSource, String instanceId) throws Exception {
+        // Same job and trigger identities as QuartzConfig, firing every second instead of weekday evenings.
+        JobDetail job = JobBuilder.newJob(RecordingJob.class).withIdentity("emailJob").storeDurably().build();
+        Trigger trigger = TriggerBuilder.newTrigger()
+                .forJob(job)
+                .withIdentity("emailTrigger")
+                .startAt(DateBuilder.evenSecondDateAfterNow())
+                .withSchedule(CronScheduleBuilder.cronSchedule("* * * * * ?").withMisfireHandlingInstructionFireAndProceed())
+                .build();
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "liuyan");
+        properties.setProperty("org.quartz.scheduler.instanceId", instanceId);
+        properties.setProperty("org.quartz.jobStore.isClustered", "true");
+        properties.setProperty("org.quartz.jobStore.clusterCheckinInterval", "1000");
+        properties.setProperty("org.quartz.jobStore.misfireThreshold", "60000");
+        properties.setProperty("org.quartz.threadPool.threadCount", "2");
+        SchedulerFactoryBean node = new SchedulerFactoryBean();
+        node.setDataSource(dataSource);
+        node.setQuartzProperties(properties);
+        node.setJobDetails(job);
+        node.setTriggers(trigger);
+        node.setOverwriteExistingJobs(true);
+        node.setWaitForJobsToCompleteOnShutdown(true);
+        node.afterPropertiesSet();
+        node.start();
+        return node;
+    }
+}
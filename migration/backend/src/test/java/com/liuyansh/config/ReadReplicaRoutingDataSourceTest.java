@@ -0,0 +1,120 @@
+package com.liuyansh.config;
+import com.liuyansh.dto.AuthPrincipal;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+// A primary and a replica H2 database, each answering "which node am I", wired the way DataSourceRoutingConfig wires them.
+@SpringJUnitConfig(ReadReplicaRoutingDataSourceTest.RoutingConfig.class)
+class ReadReplicaRoutingDataSourceTest {
+    @Configuration
+    static class RoutingConfig {
+        @Bean
+        HikariDataSource primaryDataSource() {
+            return database("primary", "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1");
+        }
+        @Bean
+        HikariDataSource replicaDataSource() {
+            HikariDataSource replica = database("replica-0", "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1");
+            new JdbcTemplate(replica).execute("CREATE TABLE replica_lag (seconds DOUBLE)");
+            new JdbcTemplate(replica).update("INSERT INTO replica_lag VALUES (0)");
+            return replica;
+        }
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+        @Bean
+        ReadReplicaRoutingDataSource routingDataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource, MeterRegistry meterRegistry) {
+            return new ReadReplicaRoutingDataSource(primaryDataSource, List.of(replicaDataSource), "SELECT seconds FROM replica_lag",
+                    Duration.ofSeconds(5), Duration.ofSeconds(10), meterRegistry);
+        }
+        @Bean
+        DataSource dataSource(ReadReplicaRoutingDataSource routingDataSource) {
+            return new LazyConnectionDataSourceProxy(routingDataSource);
+        }
+        @Bean
+        PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+        private static HikariDataSource database(String name, String url) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName(name);
+            pool.setJdbcUrl(url);
+            pool.setUsername("sa");
+            JdbcTemplate jdbc = new JdbcTemplate(pool);
+            jdbc.execute("CREATE TABLE node (name VARCHAR(16))");
+            jdbc.update("INSERT INTO node VALUES (?)", name);
+            jdbc.execute("CREATE TABLE writes (id INT)");
+            return pool;
+        }
+    }
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ReadReplicaRoutingDataSource routingDataSource;
+    @Autowired
+    private HikariDataSource primaryDataSource;
+    @Autowired
+    private HikariDataSource replicaDataSource;
+    @AfterEach
+    void reset() {
+        SecurityContextHolder.clearContext();
+        new JdbcTemplate(replicaDataSource).update("UPDATE replica_lag SET seconds = 0");
+        new JdbcTemplate(primaryDataSource).update("DELETE FROM writes");
+        routingDataSource.checkReplicas();
+    }
+    @Test
+    void readOnlyTransactionReadsFromReplica() {
+        assertThat(inTransaction(true)).isEqualTo("replica-0");
+    }
+    @Test
+    void readWriteTransactionsAndWritesGoToPrimary() {
+        assertThat(inTransaction(false)).isEqualTo("primary");
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                new JdbcTemplate(dataSource).update("INSERT INTO writes VALUES (1)"));
+        assertThat(new JdbcTemplate(primaryDataSource).queryForObject("SELECT COUNT(*) FROM writes", Integer.class)).isEqualTo(1);
+        assertThat(new JdbcTemplate(replicaDataSource).queryForObject("SELECT COUNT(*) FROM writes", Integer.class)).isZero();
+        // Statements outside any transaction are not known to be read-only either.
+        assertThat(new JdbcTemplate(dataSource).queryForObject("SELECT name FROM node", String.class)).isEqualTo("primary");
+    }
+    @Test
+    void readsFallBackToPrimaryOnceReplicaIsMarkedDown() {
+        new JdbcTemplate(replicaDataSource).update("UPDATE replica_lag SET seconds = 60");
+        routingDataSource.checkReplicas();
+        assertThat(inTransaction(true)).isEqualTo("primary");
+        new JdbcTemplate(replicaDataSource).update("UPDATE replica_lag SET seconds = 0");
+        routingDataSource.checkReplicas();
+        assertThat(inTransaction(true)).isEqualTo("replica-0");
+    }
+    @Test
+    void readsAfterOwnWriteStayOnPrimary() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(new AuthPrincipal("routing-writer", "138****0000"), null, List.of()));
+        assertThat(inTransaction(false)).isEqualTo("primary");
+        assertThat(inTransaction(true)).isEqualTo("primary");
+    }
+    private String inTransaction(boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> new JdbcTemplate(dataSource).queryForObject("SELECT name FROM node", String.class));
+    }
+}
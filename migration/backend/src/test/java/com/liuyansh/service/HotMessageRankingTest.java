@@ -0,0 +1,101 @@
+package com.liuyansh.service;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import static org.assertj.core.api.Assertions.assertThat;
+class HotMessageRankingTest {
+    private static final Instant LANDMARK = Instant.parse("2026-01-01T00:00:00Z");
+    @Test
+    void insertedMessagesRankByScoreOnceHydrated() {
+        HotMessageRanking ranking = new HotMessageRanking(8, Duration.ofHours(6), LANDMARK);
+        UUID low = UUID.randomUUID();
+        UUID high = UUID.randomUUID();
+        UUID unhydrated = UUID.randomUUID();
+        ranking.add(low, 1, LANDMARK, 1, 0);
+        ranking.add(high, 3, LANDMARK, 0, 1);
+        ranking.add(unhydrated, 5, LANDMARK, 0, 0);
+        ranking.add(low, 1, LANDMARK, 1, 0);
+        hydrate(ranking, low, high);
+        assertThat(ranking.size()).isEqualTo(3);
+        assertThat(ranking.missingPayloads(10)).containsExactly(unhydrated);
+        List<HotMessageRanking.Ranked> top = ranking.top(10, LANDMARK);
+        assertThat(ids(top)).containsExactly(high, low);
+        assertThat(top.get(1).score()).isEqualTo(2);
+    }
+    @Test
+    void fullRankingEvictsTheWeakestOnlyForAStrongerNewcomer() {
+        HotMessageRanking ranking = new HotMessageRanking(3, Duration.ofHours(6), LANDMARK);
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UUID c = UUID.randomUUID();
+        ranking.add(a, 1, LANDMARK, 0, 0);
+        ranking.add(b, 2, LANDMARK, 0, 0);
+        ranking.add(c, 3, LANDMARK, 0, 0);
+        // a overtakes b, so b becomes the weakest candidate.
+        ranking.add(a, 4, LANDMARK, 0, 0);
+        UUID weak = UUID.randomUUID();
+        ranking.add(weak, 1, LANDMARK, 0, 0);
+        assertThat(ranking.size()).isEqualTo(3);
+        UUID strong = UUID.randomUUID();
+        ranking.add(strong, 2.5, LANDMARK, 0, 0);
+        hydrate(ranking, a, b, c, weak, strong);
+        assertThat(ids(ranking.top(10, LANDMARK))).containsExactly(a, c, strong);
+    }
+    @Test
+    void removedMessagesLeaveTheOthersFindable() {
+        HotMessageRanking ranking = new HotMessageRanking(64, Duration.ofHours(6), LANDMARK);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            ranking.add(id, i + 1, LANDMARK, 0, 0);
+        }
+        List<UUID> kept = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (i % 3 == 0) ranking.remove(ids.get(i));
+            else kept.add(ids.get(i));
+        }
+        assertThat(ranking.size()).isEqualTo(kept.size());
+        hydrate(ranking, kept.toArray(UUID[]::new));
+        assertThat(ranking.missingPayloads(100)).isEmpty();
+        assertThat(ids(ranking.top(100, LANDMARK))).containsExactlyInAnyOrderElementsOf(kept);
+        // The freed capacity is reused, and eviction still picks the weakest survivor (ids[1], score 2).
+        for (int i = 0; i < ids.size() - kept.size(); i++) ranking.add(UUID.randomUUID(), 100, LANDMARK, 0, 0);
+        ranking.add(UUID.randomUUID(), 100, LANDMARK, 0, 0);
+        assertThat(ranking.size()).isEqualTo(64);
+        assertThat(ids(ranking.top(100, LANDMARK))).doesNotContain(ids.get(1)).contains(ids.get(2)).hasSize(kept.size() - 1);
+    }
+    @Test
+    void probeSequencesWrapAroundTheEndOfTheTable() {
+        HotMessageRanking ranking = new HotMessageRanking(4, Duration.ofHours(6), LANDMARK);
+        int lastBucket = 7; // capacity 4 gets an 8-bucket table
+        List<UUID> collide = new ArrayList<>();
+        while (collide.size() < 3) {
+            UUID id = UUID.randomUUID();
+            if (ranking.bucket(id.getMostSignificantBits(), id.getLeastSignificantBits()) == lastBucket) collide.add(id);
+        }
+        UUID homeZero;
+        do {
+            homeZero = UUID.randomUUID();
+        } while (ranking.bucket(homeZero.getMostSignificantBits(), homeZero.getLeastSignificantBits()) != 0);
+        // The colliding ids occupy buckets 7, 0 and 1, pushing homeZero to bucket 2.
+        for (UUID id : collide) ranking.add(id, 1, LANDMARK, 0, 0);
+        ranking.add(homeZero, 1, LANDMARK, 0, 0);
+        ranking.remove(collide.get(0));
+        ranking.remove(collide.get(2));
+        ranking.add(collide.get(1), 1, LANDMARK, 0, 0);
+        ranking.add(homeZero, 1, LANDMARK, 0, 0);
+        hydrate(ranking, collide.get(1), homeZero);
+        assertThat(ranking.size()).isEqualTo(2);
+        assertThat(ranking.top(10, LANDMARK)).extracting(HotMessageRanking.Ranked::score).containsExactly(2.0, 2.0);
+    }
+    private static void hydrate(HotMessageRanking ranking, UUID... ids) {
+        for (UUID id : ids) ranking.hydrate(new HotMessageRanking.Payload(id, "user", "138****0000", "text", LANDMARK), 0, 0);
+    }
+    private static List<UUID> ids(List<HotMessageRanking.Ranked> ranked) {
+        return ranked.stream().map(r -> r.payload().id()).toList();
+    }
+}